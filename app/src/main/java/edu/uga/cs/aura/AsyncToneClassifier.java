@@ -0,0 +1,32 @@
+/**
+ * @author Jett Thistle
+ * @author Kirtana Nidamarti
+ */
+
+package edu.uga.cs.aura;
+
+/**
+ * A ToneClassifier that can also hand its result to a listener instead of blocking a thread
+ * while it waits on the network
+ */
+public interface AsyncToneClassifier extends ToneClassifier {
+
+    /**
+     * Listener for the result of classifying a message
+     */
+    interface OnResultListener {
+        /**
+         * called once with the result, on any thread
+         * @param result the tone and how sure the classifier is about it
+         */
+        void onResult(Result result);
+    }
+
+    /**
+     * Finds the tone of a message and tells the listener, only the quick on-device steps run on
+     * the calling thread so never call it on the main thread
+     * @param text of the message
+     * @param listener told about the result
+     */
+    void classify(String text, OnResultListener listener);
+}
@@ -0,0 +1,406 @@
+/**
+ * @author Jett Thistle
+ * @author Kirtana Nidamarti
+ */
+
+package edu.uga.cs.aura;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.MutableData;
+import com.google.firebase.database.Transaction;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Computes auras from the tones of recent messages instead of nudging them on every send.
+ *
+ * Every analyzed message adds its tone to ToneHistory/Users/<uid> and, for group messages,
+ * ToneHistory/Groups/<groupKey>, keyed by the message's push ID so the history is in the order
+ * the messages were sent. An aura is the neutral gray shifted by every tone in the last
+ * WINDOW_MS, oldest first, and is written with one setValue. Histories are only kept since
+ * auras were computed this way, so the first recompute of a user or group saves the aura it had
+ * then in ToneHistorySeeds as the seed, and tones are folded into the seed instead of neutral
+ * gray until the seed is older than WINDOW_MS. Since the result only depends on
+ * the history, recomputing it any number of times or from any member's phone gives the same
+ * color, and nothing is read and written back when a message is sent.
+ *
+ * Auras are recomputed DEBOUNCE_MS after the last send, and when a screen showing them opens
+ * if they were not recomputed for RECOMPUTE_INTERVAL_MS, so old tones leave the window.
+ * Tones that have left the window are deleted when the aura is recomputed, so the history only
+ * grows with recent messages. Only use it from the main thread.
+ */
+public class AuraAggregator {
+
+    public static final long WINDOW_MS = TimeUnit.DAYS.toMillis(7);
+    public static final int MAX_TONES = 200;
+    public static final int MAX_PRUNED_TONES = 500;
+    public static final long DEBOUNCE_MS = TimeUnit.SECONDS.toMillis(30);
+    public static final long RECOMPUTE_INTERVAL_MS = TimeUnit.HOURS.toMillis(6);
+
+    private static final String TAG = "AuraAggregator";
+    private static final String PREFS_NAME = "auraAggregator";
+
+    private static AuraAggregator instance;
+
+    private final DatabaseReference dbRootRef = FirebaseDatabase.getInstance().getReference();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    //the pending recompute of each history path, so a burst of sends recomputes once
+    private final Map<String, Runnable> scheduledRecomputes = new HashMap<String, Runnable>();
+
+    private SharedPreferences prefs;
+
+    /**
+     * Constructor for the aggregator
+     */
+    private AuraAggregator() {
+
+    }
+
+    /**
+     * gets the aggregator shared by the whole app
+     * @return the aggregator
+     */
+    public static AuraAggregator getInstance() {
+        if (instance == null) {
+            instance = new AuraAggregator();
+        }
+        return instance;
+    }
+
+    /**
+     * gets the path of a user's tone history
+     * @param uid of the user
+     * @return the path from the root of the database
+     */
+    public static String getUserHistoryPath(String uid) {
+        return "ToneHistory/Users/" + uid;
+    }
+
+    /**
+     * gets the path of a group's tone history
+     * @param groupKey of the group
+     * @return the path from the root of the database
+     */
+    public static String getGroupHistoryPath(String groupKey) {
+        return "ToneHistory/Groups/" + groupKey;
+    }
+
+    /**
+     * Adds a message's tone to a history as part of a multi-path update
+     * @param updates the update the tone is written with
+     * @param historyPath the history to add to
+     * @param messageKey the push ID of the message
+     * @param tone of the message, tones that do not change auras are not added
+     */
+    public static void putTone(Map<String, Object> updates, String historyPath, String messageKey, int tone) {
+        if (tone >= ToneAnalysisService.TONE_ANGER && tone <= ToneAnalysisService.TONE_SADNESS) {
+            updates.put(historyPath + "/" + messageKey, tone);
+        }
+    }
+
+    /**
+     * Recomputes a user's aura once the user stops sending for DEBOUNCE_MS
+     * @param uid of the user
+     */
+    public void scheduleUser(String uid) {
+        schedule(getUserHistoryPath(uid), uid, null, AuraEngine.USER_PROFILE);
+    }
+
+    /**
+     * Recomputes a group's aura once the group stops sending for DEBOUNCE_MS
+     * @param groupKey of the group
+     */
+    public void scheduleGroup(String groupKey) {
+        schedule(getGroupHistoryPath(groupKey), null, groupKey, AuraEngine.GROUP_PROFILE);
+    }
+
+    /**
+     * Recomputes a user's aura if it was not recomputed for RECOMPUTE_INTERVAL_MS
+     * @param context used to remember when it was recomputed
+     * @param uid of the user
+     */
+    public void recomputeUserIfStale(Context context, String uid) {
+        recomputeIfStale(context, getUserHistoryPath(uid), uid, null, AuraEngine.USER_PROFILE);
+    }
+
+    /**
+     * Recomputes a group's aura if it was not recomputed for RECOMPUTE_INTERVAL_MS
+     * @param context used to remember when it was recomputed
+     * @param groupKey of the group
+     */
+    public void recomputeGroupIfStale(Context context, String groupKey) {
+        recomputeIfStale(context, getGroupHistoryPath(groupKey), null, groupKey, AuraEngine.GROUP_PROFILE);
+    }
+
+    /**
+     * Recomputes an aura after DEBOUNCE_MS, restarting the wait if it was already scheduled
+     * @param historyPath the tone history
+     * @param uid the user the aura belongs to, or null for a group
+     * @param groupKey the group the aura belongs to, or null for a user
+     * @param profile how far each tone moves the aura
+     */
+    private void schedule(final String historyPath, final String uid, final String groupKey,
+                          final AuraEngine.StepProfile profile) {
+        Runnable scheduled = scheduledRecomputes.get(historyPath);
+        if (scheduled != null) {
+            mainHandler.removeCallbacks(scheduled);
+        }
+
+        scheduled = new Runnable() {
+            @Override
+            public void run() {
+                scheduledRecomputes.remove(historyPath);
+                recompute(historyPath, uid, groupKey, profile, false);
+            }
+        };
+        scheduledRecomputes.put(historyPath, scheduled);
+        mainHandler.postDelayed(scheduled, DEBOUNCE_MS);
+    }
+
+    /**
+     * Recomputes an aura if it was not recomputed for RECOMPUTE_INTERVAL_MS
+     * @param context used to remember when it was recomputed
+     * @param historyPath the tone history
+     * @param uid the user the aura belongs to, or null for a group
+     * @param groupKey the group the aura belongs to, or null for a user
+     * @param profile how far each tone moves the aura
+     */
+    private void recomputeIfStale(Context context, String historyPath, String uid, String groupKey,
+                                  AuraEngine.StepProfile profile) {
+        if (prefs == null) {
+            prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        }
+
+        if (System.currentTimeMillis() - prefs.getLong(historyPath, 0) < RECOMPUTE_INTERVAL_MS) {
+            return;
+        }
+
+        //the time is saved once the history is read, so a failed read is tried again next time
+        recompute(historyPath, uid, groupKey, profile, true);
+    }
+
+    /**
+     * Folds the tones in the window into an aura and writes it
+     * @param historyPath the tone history
+     * @param uid the user the aura belongs to, or null for a group
+     * @param groupKey the group the aura belongs to, or null for a user
+     * @param profile how far each tone moves the aura
+     * @param rememberTime if the time is saved for recomputeIfStale once the history is read
+     */
+    private void recompute(final String historyPath, final String uid, final String groupKey,
+                           final AuraEngine.StepProfile profile, final boolean rememberTime) {
+        final String seedPath = "ToneHistorySeeds/" + historyPath.substring("ToneHistory/".length());
+        final String currentAuraPath = uid != null ? "Users/" + uid + "/aura" : "Groups/" + groupKey + "/groupAura";
+
+        dbRootRef.child(seedPath).addListenerForSingleValueEvent(new ValueEventListener() {
+            /**
+             * Overrides the onDataChange method to fold the tones into the seed, saving it first if there is none
+             * @param dataSnapshot the seed
+             */
+            @Override
+            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                if (dataSnapshot.exists()) {
+                    fold(historyPath, uid, groupKey, profile, rememberTime, startingAura(dataSnapshot));
+                }
+                else {
+                    saveSeed(seedPath, currentAuraPath, new OnSeedListener() {
+                        @Override
+                        public void onSeed(int aura) {
+                            fold(historyPath, uid, groupKey, profile, rememberTime, aura);
+                        }
+                    });
+                }
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError databaseError) {
+                Log.d(TAG, "could not read " + seedPath + ": " + databaseError.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Listener for the aura the tones are folded into
+     */
+    private interface OnSeedListener {
+        /**
+         * called once the seed is known
+         * @param aura to fold the tones into
+         */
+        void onSeed(int aura);
+    }
+
+    /**
+     * Saves the aura a user or group has now as its seed, unless another phone saved one first
+     * @param seedPath where the seed is saved
+     * @param currentAuraPath where the aura is
+     * @param listener told about the seed that was saved
+     */
+    private void saveSeed(final String seedPath, final String currentAuraPath, final OnSeedListener listener) {
+        dbRootRef.child(currentAuraPath).addListenerForSingleValueEvent(new ValueEventListener() {
+            /**
+             * Overrides the onDataChange method to save the aura as the seed
+             * @param dataSnapshot the aura
+             */
+            @Override
+            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                Integer currentAura = dataSnapshot.getValue(Integer.class);
+                final int aura = currentAura == null ? AuraEngine.NEUTRAL_AURA : currentAura;
+                final long now = System.currentTimeMillis();
+
+                dbRootRef.child(seedPath).runTransaction(new Transaction.Handler() {
+                    /**
+                     * Overrides the doTransaction method to save the seed only if there is none
+                     * @param currentData the seed
+                     * @return the new seed, or abort if one was saved first
+                     */
+                    @NonNull
+                    @Override
+                    public Transaction.Result doTransaction(@NonNull MutableData currentData) {
+                        if (currentData.getValue() != null) {
+                            return Transaction.abort();
+                        }
+                        currentData.child("aura").setValue(aura);
+                        currentData.child("time").setValue(now);
+                        return Transaction.success(currentData);
+                    }
+
+                    @Override
+                    public void onComplete(DatabaseError databaseError, boolean committed, DataSnapshot currentData) {
+                        if (databaseError != null || currentData == null || !currentData.exists()) {
+                            Log.d(TAG, "could not save " + seedPath);
+                            return;
+                        }
+                        listener.onSeed(startingAura(currentData));
+                    }
+                });
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError databaseError) {
+                Log.d(TAG, "could not read " + currentAuraPath + ": " + databaseError.getMessage());
+            }
+        });
+    }
+
+    /**
+     * gets the aura the tones in the window are folded into
+     * @param seedSnapshot the seed
+     * @return the seed's aura, or neutral gray once the seed is older than the window
+     */
+    private static int startingAura(DataSnapshot seedSnapshot) {
+        Integer aura = seedSnapshot.child("aura").getValue(Integer.class);
+        Long time = seedSnapshot.child("time").getValue(Long.class);
+        if (aura == null || time == null || System.currentTimeMillis() - time >= WINDOW_MS) {
+            return AuraEngine.NEUTRAL_AURA;
+        }
+        return aura;
+    }
+
+    /**
+     * Folds the tones in the window into an aura and writes it
+     * @param historyPath the tone history
+     * @param uid the user the aura belongs to, or null for a group
+     * @param groupKey the group the aura belongs to, or null for a user
+     * @param profile how far each tone moves the aura
+     * @param rememberTime if the time is saved for recomputeIfStale once the history is read
+     * @param startingAura the aura the tones are folded into
+     */
+    private void fold(final String historyPath, final String uid, final String groupKey,
+                      final AuraEngine.StepProfile profile, final boolean rememberTime, final int startingAura) {
+        String windowStart = PushIds.keyForTime(System.currentTimeMillis() - WINDOW_MS);
+        prune(historyPath, windowStart);
+
+        dbRootRef.child(historyPath).orderByKey().startAt(windowStart).limitToLast(MAX_TONES)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    /**
+                     * Overrides the onDataChange method to fold the tones oldest first
+                     * @param dataSnapshot the tones in the window
+                     */
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                        if (rememberTime) {
+                            prefs.edit().putLong(historyPath, System.currentTimeMillis()).apply();
+                        }
+
+                        //nothing was sent lately, keep whatever aura there is
+                        if (!dataSnapshot.hasChildren()) {
+                            return;
+                        }
+
+                        int aura = startingAura;
+                        for (DataSnapshot toneSnapshot : dataSnapshot.getChildren()) {
+                            Integer tone = toneSnapshot.getValue(Integer.class);
+                            if (tone != null) {
+                                aura = AuraEngine.shift(aura, tone, profile);
+                            }
+                        }
+
+                        //a user's aura is also copied into the lists of the user's contacts, a group's into the directory
+                        if (uid != null) {
+                            ContactSummaries.publish(uid, Collections.<String, Object>singletonMap("aura", aura));
+                        }
+                        else {
+                            Map<String, Object> auraUpdate = new HashMap<String, Object>();
+                            GroupDirectory.putField(auraUpdate, groupKey, "groupAura", aura);
+                            dbRootRef.updateChildren(auraUpdate);
+                        }
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError databaseError) {
+                        Log.d(TAG, "could not read " + historyPath + ": " + databaseError.getMessage());
+                    }
+                });
+    }
+
+    /**
+     * Deletes the oldest tones that have left the window, at most MAX_PRUNED_TONES at a time so
+     * a long history is cleaned up over a few recomputes instead of in one big download
+     * @param historyPath the tone history
+     * @param windowStart the push ID prefix of the oldest tone in the window
+     */
+    private void prune(final String historyPath, String windowStart) {
+        //every real push ID is longer than the prefix, so endAt only matches tones before it
+        dbRootRef.child(historyPath).orderByKey().endAt(windowStart).limitToFirst(MAX_PRUNED_TONES)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    /**
+                     * Overrides the onDataChange method to delete the old tones in one update
+                     * @param dataSnapshot the tones before the window
+                     */
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                        if (!dataSnapshot.hasChildren()) {
+                            return;
+                        }
+
+                        Map<String, Object> removals = new HashMap<String, Object>();
+                        for (DataSnapshot toneSnapshot : dataSnapshot.getChildren()) {
+                            removals.put(toneSnapshot.getKey(), null);
+                        }
+                        dbRootRef.child(historyPath).updateChildren(removals);
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError databaseError) {
+                        Log.d(TAG, "could not prune " + historyPath + ": " + databaseError.getMessage());
+                    }
+                });
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * @author Jett Thistle
+ * @author Kirtana Nidamarti
+ */
+
+package edu.uga.cs.aura;
+
+/**
+ * The math that shifts an aura towards the color of a message's tone.
+ *
+ * Auras are packed ARGB ints, the same as android.graphics.Color, but nothing here depends on
+ * Android or allocates, so it can be used in transactions, batch jobs and plain unit tests.
+ * The channel of the tone's color (red for anger, green for joy, blue for sadness) moves up
+ * and the other two move down, by at most the steps of a StepProfile.
+ */
+public final class AuraEngine {
+
+    public static final int TONE_ANGER = 0;
+    public static final int TONE_JOY = 1;
+    public static final int TONE_SADNESS = 2;
+    public static final int TONE_NONE = 3;
+
+    /**
+     * how far an aura moves for each message
+     */
+    public static final class StepProfile {
+        private final int cappedStep, downStep, upStep;
+
+        /**
+         * Constructor for the profile
+         * @param cappedStep how far a channel at 0 or 255 moves back
+         * @param downStep the most a channel moves down
+         * @param upStep the most a channel moves up
+         */
+        public StepProfile(int cappedStep, int downStep, int upStep) {
+            if (!isValidStep(cappedStep) || !isValidStep(downStep) || !isValidStep(upStep)) {
+                throw new IllegalArgumentException("steps must be between 1 and 255");
+            }
+            this.cappedStep = cappedStep;
+            this.downStep = downStep;
+            this.upStep = upStep;
+        }
+
+        /**
+         * checks if a step can move a channel without skipping past 0 or 255
+         * @param step to check
+         * @return true if it is between 1 and 255
+         */
+        private static boolean isValidStep(int step) {
+            return step >= 1 && step <= 255;
+        }
+
+        /**
+         * gets how far a channel at 0 or 255 moves back
+         * @return the step, 1 to 255
+         */
+        public int getCappedStep() {
+            return cappedStep;
+        }
+
+        /**
+         * gets the most a channel moves down
+         * @return the step, 1 to 255
+         */
+        public int getDownStep() {
+            return downStep;
+        }
+
+        /**
+         * gets the most a channel moves up
+         * @return the step, 1 to 255
+         */
+        public int getUpStep() {
+            return upStep;
+        }
+    }
+
+    /**
+     * the aura of someone who has not sent anything, the same as android.graphics.Color.GRAY
+     */
+    public static final int NEUTRAL_AURA = 0xFF888888;
+
+    /**
+     * the steps used for a user's aura
+     */
+    public static final StepProfile USER_PROFILE = new StepProfile(60, 15, 30);
+
+    /**
+     * the steps used for a group's aura, which moves less from a single member
+     */
+    public static final StepProfile GROUP_PROFILE = new StepProfile(10, 30, 30);
+
+    private AuraEngine() {
+
+    }
+
+    /**
+     * Shifts an aura towards the color of a tone
+     * @param aura packed ARGB color
+     * @param tone of the message, anything but anger, joy or sadness leaves the aura as it is
+     * @param profile how far the aura moves
+     * @return the shifted aura, always opaque
+     */
+    public static int shift(int aura, int tone, StepProfile profile) {
+        if (tone < TONE_ANGER || tone > TONE_SADNESS) {
+            return aura;
+        }
+
+        int red = shiftChannel((aura >> 16) & 0xFF, tone == TONE_ANGER, profile);
+        int green = shiftChannel((aura >> 8) & 0xFF, tone == TONE_JOY, profile);
+        int blue = shiftChannel(aura & 0xFF, tone == TONE_SADNESS, profile);
+        return 0xFF000000 | (red << 16) | (green << 8) | blue;
+    }
+
+    /**
+     * Shifts an aura by several messages in order
+     * @param aura packed ARGB color
+     * @param tones of the messages, oldest first
+     * @param profile how far the aura moves
+     * @return the shifted aura
+     */
+    public static int shiftAll(int aura, int[] tones, StepProfile profile) {
+        for (int tone : tones) {
+            aura = shift(aura, tone, profile);
+        }
+        return aura;
+    }
+
+    /**
+     * Moves one channel towards 255 if it is the tone's color, or towards 0 if it is not.
+     * A channel stuck at the other end moves back less aggressively
+     * @param value of the channel, 0 to 255
+     * @param isToneColor if the channel is the color of the tone
+     * @param profile how far the channel moves
+     * @return the new value, 0 to 255
+     */
+    private static int shiftChannel(int value, boolean isToneColor, StepProfile profile) {
+        int difference = isToneColor ? 255 - value : -value;
+
+        if (difference == 0) {
+            return value;
+        }
+        if (value == 255) {
+            return value - profile.cappedStep;
+        }
+        if (value == 0) {
+            return value + profile.cappedStep;
+        }
+        if (difference <= -profile.downStep) {
+            return value - profile.downStep;
+        }
+        if (difference >= profile.upStep) {
+            return value + profile.upStep;
+        }
+        return value + difference;
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * @author Jett Thistle
+ * @author Kirtana Nidamarti
+ */
+
+package edu.uga.cs.aura;
+
+/**
+ * Looks up tones in the ToneCache before asking another classifier
+ */
+public class CachingToneClassifier implements AsyncToneClassifier {
+
+    private final ToneClassifier classifier;
+    private final ToneCache toneCache;
+
+    /**
+     * Constructor for the classifier
+     * @param classifier asked when the tone is not cached
+     * @param toneCache where tones are remembered
+     */
+    public CachingToneClassifier(ToneClassifier classifier, ToneCache toneCache) {
+        this.classifier = classifier;
+        this.toneCache = toneCache;
+    }
+
+    /**
+     * Finds the tone in the cache, or asks the classifier and remembers its answer
+     * @param text of the message
+     * @return the tone, cached tones are certain
+     */
+    @Override
+    public Result classify(String text) {
+        Integer cachedTone = toneCache.get(text);
+        if (cachedTone != null) {
+            return new Result(cachedTone, 1);
+        }
+
+        Result result = classifier.classify(text);
+        remember(text, result);
+        return result;
+    }
+
+    /**
+     * Finds the tone in the cache, or asks the classifier without waiting on it if it can, and
+     * remembers its answer
+     * @param text of the message
+     * @param listener told about the tone, cached tones are certain
+     */
+    @Override
+    public void classify(final String text, final OnResultListener listener) {
+        Integer cachedTone = toneCache.get(text);
+        if (cachedTone != null) {
+            listener.onResult(new Result(cachedTone, 1));
+            return;
+        }
+
+        OnResultListener rememberingListener = new OnResultListener() {
+            @Override
+            public void onResult(Result result) {
+                remember(text, result);
+                listener.onResult(result);
+            }
+        };
+        if (classifier instanceof AsyncToneClassifier) {
+            ((AsyncToneClassifier) classifier).classify(text, rememberingListener);
+        }
+        else {
+            rememberingListener.onResult(classifier.classify(text));
+        }
+    }
+
+    /**
+     * Saves a tone the classifier found in the cache
+     * @param text of the message
+     * @param result from the classifier
+     */
+    private void remember(String text, Result result) {
+        //do not remember guesses, like when the API could not be reached
+        if (result.getConfidence() > 0) {
+            toneCache.put(text, result.getTone());
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/**
+ * @author Jett Thistle
+ * @author Kirtana Nidamarti
+ */
+
+package edu.uga.cs.aura;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.MutableData;
+import com.google.firebase.database.Transaction;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps a copy of each contact's name, image and aura in Contacts/<uid>/<contactID>, so the
+ * contact and chat lists can show every row from the one query they already listen to instead
+ * of a listener on Users/<contactID> per row.
+ *
+ * The copies are written when two users become contacts and whenever a user's name, image or
+ * aura changes. Every copy is written with a transaction that only changes a contact entry that
+ * still exists, so a copy never brings back a contact that was removed. Rows of contacts saved
+ * before the copies existed fall back to UserProfileCache and write their copy once it loads.
+ */
+public class ContactSummaries {
+
+    private static final String TAG = "ContactSummaries";
+
+    /**
+     * Changes fields of a user's profile and the copies of them in every contact's list
+     * @param uid of the user
+     * @param fields names and new values, only displayName, imageUrl and aura are copied
+     */
+    public static void publish(final String uid, final Map<String, Object> fields) {
+        final DatabaseReference dbRootRef = FirebaseDatabase.getInstance().getReference();
+
+        //the profile itself does not wait for the contacts to be read
+        dbRootRef.child("Users").child(uid).updateChildren(fields);
+
+        dbRootRef.child("Contacts").child(uid).addListenerForSingleValueEvent(new ValueEventListener() {
+            /**
+             * Overrides the onDataChange method to update the copy in every contact's list
+             * @param dataSnapshot the user's contacts
+             */
+            @Override
+            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                Map<String, Object> copy = new HashMap<String, Object>();
+                for (Map.Entry<String, Object> field : fields.entrySet()) {
+                    if (isSummaryField(field.getKey())) {
+                        copy.put(field.getKey(), field.getValue());
+                    }
+                }
+                if (copy.isEmpty()) {
+                    return;
+                }
+
+                //one transaction per contact, so a contact removed since the read is not added back
+                for (DataSnapshot contactSnapshot : dataSnapshot.getChildren()) {
+                    writeIfContact(contactSnapshot.getKey(), uid, copy);
+                }
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError databaseError) {
+                Log.d(TAG, "could not read contacts of " + uid + ": " + databaseError.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Writes each user's copy into the other's list, after they become contacts
+     * @param uid of one user
+     * @param contactID of the other user
+     */
+    public static void seed(String uid, String contactID) {
+        copyProfile(contactID, uid);
+        copyProfile(uid, contactID);
+    }
+
+    /**
+     * Writes the copy of a profile that was loaded another way into a user's list
+     * @param ownerID the user whose list it is
+     * @param contactID the contact the profile belongs to
+     * @param user the contact's profile
+     */
+    public static void backfill(String ownerID, String contactID, User user) {
+        writeIfContact(ownerID, contactID, toSummary(user));
+    }
+
+    /**
+     * tells if a row of a contact list has its copy of the contact's profile
+     * @param model the row
+     * @return true if the row can be shown without reading Users/<contactID>
+     */
+    public static boolean hasSummary(User model) {
+        return model.getDisplayName() != null;
+    }
+
+    /**
+     * Reads a profile and writes its copy into a user's list
+     * @param contactID the user the profile belongs to
+     * @param ownerID the user whose list it is
+     */
+    private static void copyProfile(final String contactID, final String ownerID) {
+        FirebaseDatabase.getInstance().getReference().child("Users").child(contactID)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    /**
+                     * Overrides the onDataChange method to write the copy
+                     * @param dataSnapshot the profile
+                     */
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                        if (dataSnapshot.exists()) {
+                            backfill(ownerID, contactID, dataSnapshot.getValue(User.class));
+                        }
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError databaseError) {
+                        Log.d(TAG, "could not read " + contactID + ": " + databaseError.getMessage());
+                    }
+                });
+    }
+
+    /**
+     * Writes fields of the copy of a profile into a user's list, only if the contact is still in it.
+     * A plain update would create Contacts/<ownerID>/<contactID> again if the contact was removed
+     * after the list was read or the row was shown
+     * @param ownerID the user whose list it is
+     * @param contactID the contact the profile belongs to
+     * @param copy the fields to write
+     */
+    private static void writeIfContact(final String ownerID, final String contactID, final Map<String, Object> copy) {
+        FirebaseDatabase.getInstance().getReference().child("Contacts").child(ownerID).child(contactID)
+                .runTransaction(new Transaction.Handler() {
+                    /**
+                     * Overrides the doTransaction method to write the fields into the contact's entry
+                     * @param currentData the contact's entry
+                     * @return the changed entry, or the empty one unchanged if it is not a contact
+                     */
+                    @NonNull
+                    @Override
+                    public Transaction.Result doTransaction(@NonNull MutableData currentData) {
+                        //empty until the entry is read from the database, committing it unchanged
+                        //writes nothing, and the transaction runs again if the database has the entry
+                        if (currentData.getValue() == null) {
+                            return Transaction.success(currentData);
+                        }
+
+                        for (Map.Entry<String, Object> field : copy.entrySet()) {
+                            currentData.child(field.getKey()).setValue(field.getValue());
+                        }
+                        return Transaction.success(currentData);
+                    }
+
+                    @Override
+                    public void onComplete(DatabaseError databaseError, boolean committed, DataSnapshot currentData) {
+                        if (databaseError != null) {
+                            Log.d(TAG, "could not copy " + contactID + " into " + ownerID + ": " + databaseError.getMessage());
+                        }
+                    }
+                });
+    }
+
+    /**
+     * tells if a profile field is copied into contact lists
+     * @param field name of the field
+     * @return true for displayName, imageUrl and aura
+     */
+    private static boolean isSummaryField(String field) {
+        return field.equals("displayName") || field.equals("imageUrl") || field.equals("aura");
+    }
+
+    /**
+     * Makes the copy of a profile
+     * @param user the profile
+     * @return the fields that are copied
+     */
+    private static Map<String, Object> toSummary(User user) {
+        Map<String, Object> summary = new HashMap<String, Object>();
+        summary.put("displayName", user.getDisplayName());
+        summary.put("imageUrl", user.getImageUrl());
+        summary.put("aura", user.getAura());
+        return summary;
+    }
+}
@@ -22,11 +22,8 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.firebase.ui.database.FirebaseRecyclerAdapter;
 import com.firebase.ui.database.FirebaseRecyclerOptions;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 import com.mikhaellopez.circularimageview.CircularImageView;
 import com.squareup.picasso.Picasso;
 
@@ -41,7 +38,7 @@ public class ContactsFrag extends Fragment {
     private RecyclerView contactRecyclerView;
 
 
-    private DatabaseReference dbContactsRef, dbUsersRef;
+    private DatabaseReference dbContactsRef;
     private FirebaseAuth auth;
     private String currentUserID;
 
@@ -73,7 +70,6 @@ public class ContactsFrag extends Fragment {
         currentUserID = auth.getCurrentUser().getUid();
 
         dbContactsRef = FirebaseDatabase.getInstance().getReference().child("Contacts").child(currentUserID);
-        dbUsersRef = FirebaseDatabase.getInstance().getReference().child("Users");
 
         return contactFragView;
     }
@@ -114,66 +110,88 @@ public class ContactsFrag extends Fragment {
 
                 final String contactIDs = getRef(position).getKey();
 
-                dbUsersRef.child(contactIDs).addValueEventListener(new ValueEventListener() {
-                    /**
-                     * Overrides the onDataChange method to make sure that the information changes in the
-                     * display if it changes in the database
-                     * @param dataSnapshot that is being monitored for changes
-                     */
-                    @Override
-                    public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                        //if exists
-                        if (dataSnapshot.exists()) {
-                            //get groupName and groupDescription
-                            final User user = dataSnapshot.getValue(User.class);
-                            final String imageUrl = user.getImageUrl();
-
-                            //setting user display name for contact
-                            holder.userNameTextView.setText(user.getDisplayName());
-
-                            //setting profile image for contact
-                            if(TextUtils.isEmpty(imageUrl) || imageUrl.equals("DEFAULT")){
-                                holder.profileImageView.setImageResource(R.drawable.default_profile_image);
-                            }
-                            else {
-                                Picasso.get().load(imageUrl).placeholder(R.drawable.default_profile_image).into(holder.profileImageView);
-                            }
-
-                            if ((dataSnapshot.child("aura").exists())){
-                                holder.profileImageView.setBorderColor(dataSnapshot.child("aura").getValue(Integer.class));
-                            }
-
-                            //setting onClickListener for whole item view
-                            holder.itemView.setOnClickListener(new View.OnClickListener() {
-                                @Override
-                                public void onClick(View view)
-                                {
-                                    String contactID = getRef(position).getKey();
-                                    Intent profileIntent = new Intent(getContext(), ProfileActivity.class);
-                                    profileIntent.putExtra("contactID", contactID);
-                                    startActivity(profileIntent);
-                                }
-                            });
+                if (holder.profileSubscription != null) {
+                    holder.profileSubscription.cancel();
+                    holder.profileSubscription = null;
+                }
+
+                if (ContactSummaries.hasSummary(model)) {
+                    bindContact(holder, model);
+                }
+                else {
+                    //saved before contact lists kept a copy of the profile
+                    holder.profileSubscription = UserProfileCache.getInstance().observe(contactIDs,
+                            new UserProfileCache.OnProfileChangedListener() {
+                        /**
+                         * Overrides the onProfileChanged method to show the contact and save its copy
+                         * @param user the contact's profile
+                         */
+                        @Override
+                        public void onProfileChanged(User user) {
+                            bindContact(holder, user);
+                            ContactSummaries.backfill(currentUserID, contactIDs, user);
                         }
-                    }
+                    });
+                }
 
+                //setting onClickListener for whole item view
+                holder.itemView.setOnClickListener(new View.OnClickListener() {
                     @Override
-                    public void onCancelled(@NonNull DatabaseError databaseError) {
-
+                    public void onClick(View view)
+                    {
+                        Intent profileIntent = new Intent(getContext(), ProfileActivity.class);
+                        profileIntent.putExtra("contactID", contactIDs);
+                        startActivity(profileIntent);
                     }
                 });
             }
+
+            /**
+             * Overrides the onViewRecycled method to stop listening to the contact's profile
+             * @param holder the ContactViewHolder that is being recycled
+             */
+            @Override
+            public void onViewRecycled(@NonNull ContactViewHolder holder) {
+                super.onViewRecycled(holder);
+                if (holder.profileSubscription != null) {
+                    holder.profileSubscription.cancel();
+                    holder.profileSubscription = null;
+                }
+            }
         };
         contactRecyclerView.setAdapter(adapter);
         adapter.startListening();
     }
 
+    /**
+     * Shows a contact's name, image and aura in a row
+     * @param holder the ContactViewHolder of the row
+     * @param user the contact's profile or its copy in the contact list
+     */
+    private void bindContact(ContactViewHolder holder, User user) {
+        final String imageUrl = user.getImageUrl();
+
+        //setting user display name for contact
+        holder.userNameTextView.setText(user.getDisplayName());
+
+        //setting profile image for contact
+        if(TextUtils.isEmpty(imageUrl) || imageUrl.equals("DEFAULT")){
+            holder.profileImageView.setImageResource(R.drawable.default_profile_image);
+        }
+        else {
+            Picasso.get().load(imageUrl).placeholder(R.drawable.default_profile_image).into(holder.profileImageView);
+        }
+
+        holder.profileImageView.setBorderColor(user.getAura());
+    }
+
     /**
      * creates the ContactViewHolder
      */
     public static class ContactViewHolder extends RecyclerView.ViewHolder  {
         TextView userNameTextView;
         CircularImageView profileImageView;
+        UserProfileCache.Subscription profileSubscription;
 
         /**
          * constructor for the contactView Holder that adds the users name and picture to the holder
@@ -0,0 +1,155 @@
+/**
+ * @author Jett Thistle
+ * @author Kirtana Nidamarti
+ */
+
+package edu.uga.cs.aura;
+
+import com.google.firebase.database.Exclude;
+
+/**
+ * creates the conversations in a user's inbox, read straight from Conversations/<uid>/<otherUserID>
+ */
+public class Conversation {
+    private String otherUserID, lastMessage, lastMessageID, lastFromID, lastReadMessageID;
+    private int lastTone;
+    private long timestamp;
+    private int unreadCount;
+
+    /**
+     * Empty constructor
+     */
+    public Conversation() {
+        //default needed for DataSnapshot
+    }
+
+    /**
+     * gets the ID of the other user, which is the key of the conversation and not stored in it
+     * @return the ID
+     */
+    @Exclude
+    public String getOtherUserID() {
+        return otherUserID;
+    }
+
+    /**
+     * sets the ID of the other user
+     * @param otherUserID ID of the other user
+     */
+    @Exclude
+    public void setOtherUserID(String otherUserID) {
+        this.otherUserID = otherUserID;
+    }
+
+    /**
+     * gets the content of the newest message
+     * @return the message
+     */
+    public String getLastMessage() {
+        return lastMessage;
+    }
+
+    /**
+     * sets the content of the newest message
+     * @param lastMessage content of the message
+     */
+    public void setLastMessage(String lastMessage) {
+        this.lastMessage = lastMessage;
+    }
+
+    /**
+     * gets the push ID of the newest message
+     * @return the push ID
+     */
+    public String getLastMessageID() {
+        return lastMessageID;
+    }
+
+    /**
+     * sets the push ID of the newest message
+     * @param lastMessageID push ID of the message
+     */
+    public void setLastMessageID(String lastMessageID) {
+        this.lastMessageID = lastMessageID;
+    }
+
+    /**
+     * gets the push ID of the newest message the user has read
+     * @return the push ID, or null if the user never opened the chat
+     */
+    public String getLastReadMessageID() {
+        return lastReadMessageID;
+    }
+
+    /**
+     * sets the push ID of the newest message the user has read
+     * @param lastReadMessageID push ID of the message
+     */
+    public void setLastReadMessageID(String lastReadMessageID) {
+        this.lastReadMessageID = lastReadMessageID;
+    }
+
+    /**
+     * gets who sent the newest message
+     * @return the ID of the sender
+     */
+    public String getLastFromID() {
+        return lastFromID;
+    }
+
+    /**
+     * sets who sent the newest message
+     * @param lastFromID ID of the sender
+     */
+    public void setLastFromID(String lastFromID) {
+        this.lastFromID = lastFromID;
+    }
+
+    /**
+     * gets the tone of the newest message
+     * @return the tone, TONE_NONE until it is analyzed
+     */
+    public int getLastTone() {
+        return lastTone;
+    }
+
+    /**
+     * sets the tone of the newest message
+     * @param lastTone tone of the message
+     */
+    public void setLastTone(int lastTone) {
+        this.lastTone = lastTone;
+    }
+
+    /**
+     * gets when the newest message was sent
+     * @return the time in milliseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * sets when the newest message was sent
+     * @param timestamp the time in milliseconds
+     */
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * gets the number of messages the user has not read
+     * @return the number of unread messages
+     */
+    public int getUnreadCount() {
+        return unreadCount;
+    }
+
+    /**
+     * sets the number of messages the user has not read
+     * @param unreadCount the number of unread messages
+     */
+    public void setUnreadCount(int unreadCount) {
+        this.unreadCount = unreadCount;
+    }
+}
@@ -0,0 +1,213 @@
+/**
+ * @author Jett Thistle
+ * @author Kirtana Nidamarti
+ */
+
+package edu.uga.cs.aura;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps Conversations/<uid>/<otherUserID> up to date with the newest message of every chat,
+ * so the inbox loads with one query ordered by timestamp instead of opening every
+ * Messages/<uid>/<otherUserID>.
+ *
+ * The entries of both users are written through the Outbox when the message is sent and again
+ * when its tone is known, so lastTone always belongs to lastMessage and the preview and unread
+ * count are written even if the app is closed before it is back online. Each entry also has the
+ * user's read cursor, the push ID of the newest message the user has seen, which the chat can
+ * start from. Chats from before the index existed are added
+ * once per install by backfillOnce.
+ */
+public class ConversationIndex {
+
+    private static final String TAG = "ConversationIndex";
+    private static final String PREFS_NAME = "conversationIndex";
+    private static final String PREF_BACKFILLED = "backfilled_";
+
+    /**
+     * gets the path of a user's entry for a chat
+     * @param uid of the user whose inbox it is
+     * @param otherUserID of the other user in the chat
+     * @return the path from the root of the database
+     */
+    public static String getPath(String uid, String otherUserID) {
+        return "Conversations/" + uid + "/" + otherUserID;
+    }
+
+    /**
+     * Makes a sent message the newest message in both users' entries, with its tone once it is known.
+     * Each entry is written through the Outbox with enqueueIfNewer, which leaves it alone if it
+     * already has a newer message, so a late tone or a message that is sent again never replaces
+     * the preview of a newer message. The write that first makes the message the receiver's newest
+     * also adds it to the receiver's unread count, so it is counted once however often it is sent.
+     * Call it when the message is sent and again with its tone, after the first call's writes.
+     * The time is the one in the push ID, so a message sent again keeps its place in the inbox
+     * @param afterID the Outbox ID of the write the entries are written after, or null
+     * @param senderID who sent the message
+     * @param receiverID who the message was sent to
+     * @param messageID the push ID of the message
+     * @param message content of the message
+     * @param tone of the message, or null if it is not known yet
+     * @return the Outbox ID of the last write, to enqueue the tone's entries after
+     */
+    public static String putMessage(String afterID, String senderID, String receiverID, String messageID,
+                                    String message, Integer tone) {
+        Map<String, Object> preview = new HashMap<String, Object>();
+        preview.put("lastMessage", message);
+        preview.put("lastFromID", senderID);
+        //the tone is written again once it is known, after this
+        preview.put("lastTone", tone == null ? ToneAnalysisService.TONE_NONE : tone);
+        preview.put("timestamp", PushIds.timeOfKey(messageID));
+
+        Outbox outbox = Outbox.getInstance();
+        String senderWriteID = outbox.enqueueIfNewer(afterID, getPath(senderID, receiverID),
+                "lastMessageID", messageID, preview, null);
+        return outbox.enqueueIfNewer(senderWriteID, getPath(receiverID, senderID),
+                "lastMessageID", messageID, preview, "unreadCount");
+    }
+
+    /**
+     * Moves a user's read cursor for a chat
+     * @param uid of the user who read the messages
+     * @param otherUserID of the other user in the chat
+     * @param lastReadMessageID push ID of the newest message the user has seen
+     * @param caughtUp if it is the newest message of the chat, which clears the unread count
+     */
+    public static void markRead(String uid, String otherUserID, String lastReadMessageID, boolean caughtUp) {
+        Map<String, Object> readState = new HashMap<String, Object>();
+        readState.put("lastReadMessageID", lastReadMessageID);
+        if (caughtUp) {
+            readState.put("unreadCount", 0);
+        }
+        FirebaseDatabase.getInstance().getReference().child(getPath(uid, otherUserID)).updateChildren(readState);
+    }
+
+    /**
+     * Listener for when the entry of one chat has been backfilled
+     */
+    private interface OnBackfilledListener {
+        /**
+         * called once the chat's newest message was read and its entry written, or either failed
+         * @param succeeded false if the read or the write failed
+         */
+        void onBackfilled(boolean succeeded);
+    }
+
+    /**
+     * Adds the user's chats from before the index existed, once per install and user. It is only
+     * remembered as done once every chat's entry was written, so a failed read or write is tried
+     * again the next time
+     * @param context used to remember that it was done
+     * @param uid of the user
+     */
+    public static void backfillOnce(Context context, final String uid) {
+        final SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        if (prefs.getBoolean(PREF_BACKFILLED + uid, false)) {
+            return;
+        }
+
+        final DatabaseReference dbRootRef = FirebaseDatabase.getInstance().getReference();
+
+        dbRootRef.child("Contacts").child(uid).addListenerForSingleValueEvent(new ValueEventListener() {
+            /**
+             * Overrides the onDataChange method to add the newest message of the chat with every contact
+             * @param dataSnapshot the user's contacts
+             */
+            @Override
+            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                if (!dataSnapshot.hasChildren()) {
+                    prefs.edit().putBoolean(PREF_BACKFILLED + uid, true).apply();
+                    return;
+                }
+
+                final int[] pending = {(int) dataSnapshot.getChildrenCount()};
+                final boolean[] failed = {false};
+                OnBackfilledListener listener = new OnBackfilledListener() {
+                    @Override
+                    public void onBackfilled(boolean succeeded) {
+                        failed[0] |= !succeeded;
+                        pending[0]--;
+                        if (pending[0] == 0 && !failed[0]) {
+                            prefs.edit().putBoolean(PREF_BACKFILLED + uid, true).apply();
+                        }
+                    }
+                };
+                for (DataSnapshot contactSnapshot : dataSnapshot.getChildren()) {
+                    backfillConversation(dbRootRef, uid, contactSnapshot.getKey(), listener);
+                }
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError databaseError) {
+                Log.d(TAG, "backfill failed: " + databaseError.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Adds the newest message of one chat to the user's entry, if the chat has messages
+     * @param dbRootRef the root of the database
+     * @param uid of the user
+     * @param otherUserID of the other user
+     * @param listener told once the entry was written, or the read or write failed
+     */
+    private static void backfillConversation(final DatabaseReference dbRootRef, final String uid, final String otherUserID,
+                                             final OnBackfilledListener listener) {
+        dbRootRef.child("Messages").child(uid).child(otherUserID).orderByKey().limitToLast(1)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    /**
+                     * Overrides the onDataChange method to write the entry from the newest message
+                     * @param dataSnapshot the newest message of the chat
+                     */
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                        //a chat with no messages has no entry
+                        if (!dataSnapshot.hasChildren()) {
+                            listener.onBackfilled(true);
+                            return;
+                        }
+
+                        for (DataSnapshot messageSnapshot : dataSnapshot.getChildren()) {
+                            Message message = messageSnapshot.getValue(Message.class);
+
+                            //direct messages have no timestamp, their push ID has the time they were sent
+                            Map<String, Object> entry = new HashMap<String, Object>();
+                            entry.put("lastMessage", message.getMessage());
+                            entry.put("lastMessageID", messageSnapshot.getKey());
+                            entry.put("lastFromID", message.getFromID());
+                            entry.put("lastTone", message.getTone());
+                            entry.put("timestamp", PushIds.timeOfKey(messageSnapshot.getKey()));
+                            dbRootRef.child(getPath(uid, otherUserID)).updateChildren(entry, new DatabaseReference.CompletionListener() {
+                                @Override
+                                public void onComplete(DatabaseError databaseError, @NonNull DatabaseReference databaseReference) {
+                                    if (databaseError != null) {
+                                        Log.d(TAG, "could not backfill " + otherUserID + ": " + databaseError.getMessage());
+                                    }
+                                    listener.onBackfilled(databaseError == null);
+                                }
+                            });
+                        }
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError databaseError) {
+                        Log.d(TAG, "could not read the chat with " + otherUserID + ": " + databaseError.getMessage());
+                        listener.onBackfilled(false);
+                    }
+                });
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * @author Jett Thistle
+ * @author Kirtana Nidamarti
+ */
+
+package edu.uga.cs.aura;
+
+/**
+ * Asks a fast classifier first and only asks a slower one when the fast one is not sure.
+ *
+ * The default one classifies on the device with LexiconToneClassifier and only sends the
+ * message to IBM's Tone Analyzer when the lexicon is not confident, so most messages never
+ * wait on the network and tones still work offline.
+ */
+public class FallbackToneClassifier implements AsyncToneClassifier {
+
+    public static final double DEFAULT_MIN_CONFIDENCE = .6;
+
+    private static FallbackToneClassifier defaultClassifier;
+
+    private final ToneClassifier primary, fallback;
+    private final double minConfidence;
+
+    /**
+     * Constructor for the classifier
+     * @param primary the classifier asked first
+     * @param fallback the classifier asked when the primary one is not sure
+     * @param minConfidence the confidence the primary one needs for its tone to be used
+     */
+    public FallbackToneClassifier(ToneClassifier primary, ToneClassifier fallback, double minConfidence) {
+        this.primary = primary;
+        this.fallback = fallback;
+        this.minConfidence = minConfidence;
+    }
+
+    /**
+     * gets the classifier used for sent messages
+     * @return the lexicon classifier backed by IBM's Tone Analyzer, whose tones are cached
+     */
+    public static synchronized FallbackToneClassifier getDefault() {
+        if (defaultClassifier == null) {
+            defaultClassifier = new FallbackToneClassifier(new LexiconToneClassifier(),
+                    new CachingToneClassifier(new WatsonToneClassifier(), ToneCache.getInstance()),
+                    DEFAULT_MIN_CONFIDENCE);
+        }
+        return defaultClassifier;
+    }
+
+    /**
+     * Finds the tone with the primary classifier, or the fallback if the primary one is not sure
+     * @param text of the message
+     * @return the more confident of the two results
+     */
+    @Override
+    public Result classify(String text) {
+        Result primaryResult = primary.classify(text);
+        if (primaryResult.getConfidence() >= minConfidence) {
+            return primaryResult;
+        }
+
+        //if the fallback fails, like when offline, keep the primary guess
+        Result fallbackResult = fallback.classify(text);
+        return fallbackResult.getConfidence() > primaryResult.getConfidence() ? fallbackResult : primaryResult;
+    }
+
+    /**
+     * Finds the tone with the primary classifier, or asks the fallback without waiting on it if
+     * the primary one is not sure. The primary classifier is the fast one and is asked directly
+     * @param text of the message
+     * @param listener told about the more confident of the two results
+     */
+    @Override
+    public void classify(String text, final OnResultListener listener) {
+        final Result primaryResult = primary.classify(text);
+        if (primaryResult.getConfidence() >= minConfidence) {
+            listener.onResult(primaryResult);
+            return;
+        }
+
+        OnResultListener choosingListener = new OnResultListener() {
+            @Override
+            public void onResult(Result fallbackResult) {
+                //if the fallback fails, like when offline, keep the primary guess
+                listener.onResult(fallbackResult.getConfidence() > primaryResult.getConfidence() ? fallbackResult : primaryResult);
+            }
+        };
+        if (fallback instanceof AsyncToneClassifier) {
+            ((AsyncToneClassifier) fallback).classify(text, choosingListener);
+        }
+        else {
+            choosingListener.onResult(fallback.classify(text));
+        }
+    }
+}
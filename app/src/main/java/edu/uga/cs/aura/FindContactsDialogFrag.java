@@ -10,9 +10,7 @@ import android.app.Dialog;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.os.Bundle;
-import android.text.Editable;
 import android.text.TextUtils;
-import android.text.TextWatcher;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -26,7 +24,6 @@ import androidx.fragment.app.DialogFragment;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.firebase.ui.database.FirebaseRecyclerAdapter;
 import com.firebase.ui.database.FirebaseRecyclerOptions;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
@@ -39,11 +36,14 @@ import com.squareup.picasso.Picasso;
  */
 public class FindContactsDialogFrag extends DialogFragment {
 
+    public static final long SEARCH_DEBOUNCE_MS = 300;
+    public static final int MAX_RESULTS = 25;
+
     private RecyclerView contactsRecyclerView;
     private EditText userSearchBar;
 
     private Query userDisplayNameQuery;
-    private FirebaseRecyclerAdapter<User, FindContactViewHolder> adapter;
+    private UserSearchList userList;
     private FirebaseRecyclerOptions<User> options;
     private DatabaseReference dbUsersRef;
 
@@ -58,103 +58,22 @@ public class FindContactsDialogFrag extends DialogFragment {
 
         dbUsersRef = FirebaseDatabase.getInstance().getReference().child("Users");
 
-        //Setting up firebase adapter
-        options = new FirebaseRecyclerOptions.Builder<User>()
-                        .setQuery(dbUsersRef, User.class)
-                        .build();
-
-        adapter = new FirebaseRecyclerAdapter<User, FindContactViewHolder>(options) {
-                    /**
-                     * Override for the onBindViewHolder to set up the holder for each contact
-                     * @param holder
-                     * @param position of the view that is being added to the contacts dialog
-                     * @param model user that is being added
-                     */
-                    @Override
-                    protected void onBindViewHolder(@NonNull FindContactViewHolder holder, final int position, @NonNull User model)
-                    {
-                        holder.userNameTextView.setText(model.getDisplayName());
-
-                        final String imageUrl = model.getImageUrl();
-
-                        Log.d("imageUrl", imageUrl);
-
-                        if(TextUtils.isEmpty(imageUrl) || imageUrl.equals("DEFAULT")){
-                            holder.profileImageView.setImageResource(R.drawable.default_profile_image);
-                        }
-                        else {
-                            Picasso.get().load(imageUrl).placeholder(R.drawable.default_profile_image).into(holder.profileImageView);
-                        }
-
-                        holder.profileImageView.setBorderColor(model.getAura());
-
-
-                        holder.itemView.setOnClickListener(new View.OnClickListener() {
-                            @Override
-                            public void onClick(View view)
-                            {
-                                String contactID = getRef(position).getKey();
-                                //if you don't click on yourself
-                                Intent profileIntent = new Intent(getContext(), ProfileActivity.class);
-                                profileIntent.putExtra("contactID", contactID);
-                                startActivity(profileIntent);
-
-                            }
-                        });
-                    }
-
-                    /**
-                     * Overrides that FindContactViewHolder that adds the layout to each item
-                     * @param parent that the contact is added to
-                     * @param viewType
-                     * @return FindContactViewHolder holds the view
-                     */
-                    @NonNull
-                    @Override
-                    public FindContactViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-                        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.user_display, parent, false);
-                        FindContactViewHolder viewHolder = new FindContactViewHolder(view);
-                        return viewHolder;
-                    }
-                };
-
         LayoutInflater inflater = getActivity().getLayoutInflater();
 
         View v = inflater.inflate(R.layout.recycler_view_dialog_layout,null, false);
 
         contactsRecyclerView = v.findViewById(R.id.dialog_recycler_view);
         contactsRecyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
-        contactsRecyclerView.setAdapter(adapter);
-        adapter.startListening();
 
+        //Setting up the list, its one adapter is reused for every search
+        options = new FirebaseRecyclerOptions.Builder<User>()
+                        .setQuery(dbUsersRef.orderByKey().limitToFirst(MAX_RESULTS), User.class)
+                        .build();
+        userList = new UserSearchList(contactsRecyclerView, options);
 
         userSearchBar = v.findViewById(R.id.userSearchBar);
         userSearchBar.setVisibility(View.VISIBLE);
-        userSearchBar.addTextChangedListener(new TextWatcher() {
-            @Override
-            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
-
-            }
-
-            @Override
-            public void onTextChanged(CharSequence s, int start, int before, int count) {
-
-            }
-
-            /**
-             * Searches for the user
-             * @param s
-             */
-            @Override
-            public void afterTextChanged(Editable s) {
-                if (!s.toString().isEmpty()){
-                    searchForUser(s.toString());
-                }
-                else {
-                    searchForUser("");
-                }
-            }
-        });
+        userList.attachSearchBar(userSearchBar);
 
 
         return new AlertDialog.Builder(getContext())
@@ -189,86 +108,110 @@ public class FindContactsDialogFrag extends DialogFragment {
     }
 
     /**
-     * Searches for the user
+     * Overrides the onStart method to listen to the search results
+     */
+    @Override
+    public void onStart() {
+        super.onStart();
+        userList.start();
+    }
+
+    /**
+     * Overrides the onStop method to stop the pending search and the results' listener
+     */
+    @Override
+    public void onStop() {
+        super.onStop();
+        userList.stop();
+    }
+
+    /**
+     * Searches for the user, the list stops listening to the previous results
      * @param displayName name of the user
      */
     public void searchForUser(final String displayName){
         Log.d("Searched For:", displayName);
 
-        if (displayName != "") {
-            //search for user query
-            userDisplayNameQuery = dbUsersRef.orderByChild("displayName").startAt(displayName)
-                    .endAt(displayName+"\uf8ff");
+        //search for user query, any word of the name matches regardless of case
+        userDisplayNameQuery = UserSearchIndex.search(displayName, MAX_RESULTS);
 
-            //Setting up firebase adapter
+        if (userDisplayNameQuery != null) {
+            //each uid found in the index is read from Users, at most MAX_RESULTS of them
             options = new FirebaseRecyclerOptions.Builder<User>()
-                    .setQuery(userDisplayNameQuery, User.class)
+                    .setIndexedQuery(userDisplayNameQuery, dbUsersRef, User.class)
                     .build();
         }
         else {
-            //Setting up firebase adapter
             options = new FirebaseRecyclerOptions.Builder<User>()
-                    .setQuery(dbUsersRef, User.class)
+                    .setQuery(dbUsersRef.orderByKey().limitToFirst(MAX_RESULTS), User.class)
                     .build();
         }
 
-        adapter = new FirebaseRecyclerAdapter<User, FindContactViewHolder>(options) {
-            /**
-             * overrides the onBindViewHolder method to bind the views
-             * @param holder the FindContactViewHolder that holds the information about the user
-             * @param position the position of the contact that will is being added
-             * @param model the user for the contact
-             */
-            @Override
-            protected void onBindViewHolder(@NonNull FindContactViewHolder holder, final int position, @NonNull User model)
-            {
-                holder.userNameTextView.setText(model.getDisplayName());
-
-                final String imageUrl = model.getImageUrl();
+        userList.showQuery(options);
+    }
 
-                Log.d("imageUrl", imageUrl);
+    /**
+     * the list of users found by the search
+     */
+    private class UserSearchList extends SearchableList<User, FindContactViewHolder> {
 
-                if(TextUtils.isEmpty(imageUrl) || imageUrl.equals("DEFAULT")){
-                    holder.profileImageView.setImageResource(R.drawable.default_profile_image);
-                }
-                else {
-                    Picasso.get().load(imageUrl).placeholder(R.drawable.default_profile_image).into(holder.profileImageView);
-                }
+        UserSearchList(RecyclerView recyclerView, FirebaseRecyclerOptions<User> options) {
+            super(recyclerView, options, SEARCH_DEBOUNCE_MS);
+        }
 
-                holder.profileImageView.setBorderColor(model.getAura());
+        /**
+         * Overrides the createViewHolder to add the layout to each item
+         * @param parent that the contact is added to
+         * @return FindContactViewHolder holds the view
+         */
+        @Override
+        protected FindContactViewHolder createViewHolder(@NonNull ViewGroup parent) {
+            View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.user_display, parent, false);
+            return new FindContactViewHolder(view);
+        }
 
+        /**
+         * Overrides the bindViewHolder to set up the holder for each contact
+         * @param holder of the contact
+         * @param contactID uid of the user
+         * @param model user that is being added
+         */
+        @Override
+        protected void bindViewHolder(@NonNull FindContactViewHolder holder, final String contactID, @NonNull User model) {
+            holder.userNameTextView.setText(model.getDisplayName());
 
-                holder.itemView.setOnClickListener(new View.OnClickListener() {
-                    @Override
-                    public void onClick(View view)
-                    {
-                        String contactID = getRef(position).getKey();
-                        //if you don't click on yourself
-                        Intent profileIntent = new Intent(getContext(), ProfileActivity.class);
-                        profileIntent.putExtra("contactID", contactID);
-                        startActivity(profileIntent);
+            final String imageUrl = model.getImageUrl();
 
-                    }
-                });
+            if(TextUtils.isEmpty(imageUrl) || imageUrl.equals("DEFAULT")){
+                holder.profileImageView.setImageResource(R.drawable.default_profile_image);
             }
-
-            /**
-             * Overrides the onCreateViewHolder method to inflate the view that contains the user's contact information
-             * @param parent the parent that the view is inflated into
-             * @param viewType
-             * @return FindContactViewHolder that is created
-             */
-            @NonNull
-            @Override
-            public FindContactViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-                View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.user_display, parent, false);
-                FindContactViewHolder viewHolder = new FindContactViewHolder(view);
-                return viewHolder;
+            else {
+                Picasso.get().load(imageUrl).placeholder(R.drawable.default_profile_image).into(holder.profileImageView);
             }
-        };
 
-        contactsRecyclerView.setAdapter(adapter);
-        adapter.startListening();
+            holder.profileImageView.setBorderColor(model.getAura());
+
+
+            holder.itemView.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View view)
+                {
+                    Intent profileIntent = new Intent(getContext(), ProfileActivity.class);
+                    profileIntent.putExtra("contactID", contactID);
+                    startActivity(profileIntent);
+
+                }
+            });
+        }
+
+        /**
+         * Overrides the onSearch method to search for the user once they stop typing
+         * @param search name of the user
+         */
+        @Override
+        protected void onSearch(String search) {
+            searchForUser(search);
+        }
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,453 @@
+/**
+ * @author Jett Thistle
+ * @author Kirtana Nidamarti
+ */
+
+package edu.uga.cs.aura;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * On-device table of every group's key, name, description, aura and image, so the groups tab
+ * can search as the user types without a query per keystroke.
+ *
+ * The table is read from GroupDirectory/<groupKey>, a copy of each group's name, description,
+ * aura and image without its owner or old messages, written with putField next to the group's
+ * own fields in Groups. One child listener on GroupDirectory keeps the table in sync, only the
+ * groups that are added, changed or removed are sent after the first load. Listeners are told once when the first
+ * load is done and then once per batch of changes, not once per group. Searching is a scan of
+ * the table that ranks name prefixes first, then word prefixes, substrings of the name or
+ * description, and finally names that are close to the search with a typo or missing letters.
+ * Only use it from the main thread.
+ */
+public class GroupDirectory {
+
+    private static final String TAG = "GroupDirectory";
+    private static final String DIRECTORY_PATH = "GroupDirectory/";
+
+    private static final int RANK_NAME_PREFIX = 0;
+    private static final int RANK_WORD_PREFIX = 1;
+    private static final int RANK_NAME_SUBSTRING = 2;
+    private static final int RANK_DESCRIPTION_SUBSTRING = 3;
+    private static final int RANK_SUBSEQUENCE = 4;
+    private static final int RANK_TYPO = 5;
+    private static final int NO_MATCH = -1;
+
+    private static GroupDirectory instance;
+
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+    private final List<OnDirectoryChangedListener> listeners = new ArrayList<OnDirectoryChangedListener>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private boolean started, loaded, notifyPending;
+
+    /**
+     * Listener for when a group is added, changed or removed
+     */
+    public interface OnDirectoryChangedListener {
+        /**
+         * called after the table changed
+         */
+        void onDirectoryChanged();
+    }
+
+    /**
+     * a group in the directory
+     */
+    public static class Entry {
+        private final String groupKey;
+        private final Group group;
+        private final String name;
+        private final String description;
+        private int rank;
+
+        Entry(String groupKey, Group group) {
+            this.groupKey = groupKey;
+            this.group = group;
+            this.name = normalize(group.getGroupName());
+            this.description = normalize(group.getGroupDescription());
+        }
+
+        /**
+         * gets the key of the group
+         * @return the group key
+         */
+        public String getGroupKey() {
+            return groupKey;
+        }
+
+        /**
+         * gets the group's information
+         * @return the group
+         */
+        public Group getGroup() {
+            return group;
+        }
+    }
+
+    /**
+     * orders results by how well they matched, then by name
+     */
+    private static final Comparator<Entry> BY_RANK = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            if (a.rank != b.rank) {
+                return a.rank < b.rank ? -1 : 1;
+            }
+            return a.name.compareTo(b.name);
+        }
+    };
+
+    /**
+     * Constructor for the directory
+     */
+    private GroupDirectory() {
+
+    }
+
+    /**
+     * gets the directory shared by the whole app
+     * @return the directory
+     */
+    public static GroupDirectory getInstance() {
+        if (instance == null) {
+            instance = new GroupDirectory();
+        }
+        return instance;
+    }
+
+    /**
+     * gets the path of a group's directory entry
+     * @param groupKey of the group
+     * @return the path from the root of the database
+     */
+    public static String getEntryPath(String groupKey) {
+        return DIRECTORY_PATH + groupKey;
+    }
+
+    /**
+     * Adds a field of a group to a multi-path update, both in Groups and in the directory entry
+     * @param updates the update the field is written with
+     * @param groupKey of the group
+     * @param field groupName, groupDescription, groupAura or groupImage
+     * @param value of the field
+     */
+    public static void putField(Map<String, Object> updates, String groupKey, String field, Object value) {
+        updates.put("Groups/" + groupKey + "/" + field, value);
+        updates.put(getEntryPath(groupKey) + "/" + field, value);
+    }
+
+    /**
+     * Starts keeping the table in sync with GroupDirectory, only the first call does anything
+     */
+    public void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+
+        DatabaseReference dbDirectoryRef = FirebaseDatabase.getInstance().getReference().child("GroupDirectory");
+        dbDirectoryRef.addChildEventListener(new ChildEventListener() {
+            /**
+             * Overrides the onChildAdded method to add the group to the table
+             * @param dataSnapshot the group
+             * @param previousChildName unused
+             */
+            @Override
+            public void onChildAdded(@NonNull DataSnapshot dataSnapshot, @Nullable String previousChildName) {
+                put(dataSnapshot);
+            }
+
+            /**
+             * Overrides the onChildChanged method to replace the group in the table
+             * @param dataSnapshot the group
+             * @param previousChildName unused
+             */
+            @Override
+            public void onChildChanged(@NonNull DataSnapshot dataSnapshot, @Nullable String previousChildName) {
+                put(dataSnapshot);
+            }
+
+            /**
+             * Overrides the onChildRemoved method to drop the group from the table
+             * @param dataSnapshot the group
+             */
+            @Override
+            public void onChildRemoved(@NonNull DataSnapshot dataSnapshot) {
+                if (entries.remove(dataSnapshot.getKey()) != null) {
+                    notifyListeners();
+                }
+            }
+
+            @Override
+            public void onChildMoved(@NonNull DataSnapshot dataSnapshot, @Nullable String previousChildName) {
+
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError databaseError) {
+                Log.d(TAG, "directory sync stopped: " + databaseError.getMessage());
+                started = false;
+            }
+        });
+
+        //value events come after the child events of the same query, and share its download
+        dbDirectoryRef.addListenerForSingleValueEvent(new ValueEventListener() {
+            /**
+             * Overrides the onDataChange method to tell the listeners once about the first load
+             * @param dataSnapshot every directory entry
+             */
+            @Override
+            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                loaded = true;
+                notifyListeners();
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError databaseError) {
+
+            }
+        });
+    }
+
+    /**
+     * starts telling a listener about changes to the table
+     * @param listener to add
+     */
+    public void addListener(OnDirectoryChangedListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * stops telling a listener about changes to the table
+     * @param listener to remove
+     */
+    public void removeListener(OnDirectoryChangedListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Finds the groups whose name or description match the search
+     * @param search what the user typed
+     * @param maxResults the most groups to return
+     * @return the best matches first
+     */
+    public List<Entry> search(String search, int maxResults) {
+        String query = normalize(search);
+        List<Entry> results = new ArrayList<Entry>();
+        if (query.isEmpty()) {
+            return results;
+        }
+
+        for (Entry entry : entries.values()) {
+            entry.rank = rank(entry, query);
+            if (entry.rank != NO_MATCH) {
+                results.add(entry);
+            }
+        }
+
+        Collections.sort(results, BY_RANK);
+        return results.size() > maxResults ? new ArrayList<Entry>(results.subList(0, maxResults)) : results;
+    }
+
+    /**
+     * Adds or replaces a group in the table
+     * @param dataSnapshot the group
+     */
+    private void put(DataSnapshot dataSnapshot) {
+        Group group = dataSnapshot.getValue(Group.class);
+        if (group == null || group.getGroupName() == null) {
+            return;
+        }
+
+        entries.put(dataSnapshot.getKey(), new Entry(dataSnapshot.getKey(), group));
+        notifyListeners();
+    }
+
+    /**
+     * Tells every listener the table changed, once for all the changes made before the main
+     * thread gets to it, and not at all while the first load is still coming in
+     */
+    private void notifyListeners() {
+        if (!loaded || notifyPending) {
+            return;
+        }
+        notifyPending = true;
+        mainHandler.post(notifyRunnable);
+    }
+
+    /**
+     * tells every listener about the changes since the last time
+     */
+    private final Runnable notifyRunnable = new Runnable() {
+        @Override
+        public void run() {
+            notifyPending = false;
+            for (OnDirectoryChangedListener listener : new ArrayList<OnDirectoryChangedListener>(listeners)) {
+                listener.onDirectoryChanged();
+            }
+        }
+    };
+
+    /**
+     * Ranks how well a group matches
+     * @param entry the group
+     * @param query the normalized search
+     * @return the rank, lower is better, or NO_MATCH
+     */
+    private static int rank(Entry entry, String query) {
+        String name = entry.name;
+
+        if (name.startsWith(query)) {
+            return RANK_NAME_PREFIX;
+        }
+        int index = name.indexOf(query);
+        if (index > 0) {
+            return name.charAt(index - 1) == ' ' ? RANK_WORD_PREFIX : RANK_NAME_SUBSTRING;
+        }
+        if (entry.description.contains(query)) {
+            return RANK_DESCRIPTION_SUBSTRING;
+        }
+        if (isSubsequence(query, name)) {
+            return RANK_SUBSEQUENCE;
+        }
+        if (hasWordWithTypo(name, query)) {
+            return RANK_TYPO;
+        }
+        return NO_MATCH;
+    }
+
+    /**
+     * checks if every character of the query is in the name, in order ("ctlvrs" in "cat lovers")
+     * @param query the normalized search
+     * @param name the normalized name
+     * @return true if the name has the query's characters in order
+     */
+    private static boolean isSubsequence(String query, String name) {
+        int matched = 0;
+        for (int i = 0; i < name.length() && matched < query.length(); i++) {
+            if (name.charAt(i) == query.charAt(matched)) {
+                matched++;
+            }
+        }
+        return matched == query.length();
+    }
+
+    /**
+     * checks if a word of the name starts with the query give or take a typo, one typo is allowed
+     * for queries of 4 characters and two for queries of 8
+     * @param name the normalized name
+     * @param query the normalized search
+     * @return true if a word's start is within the allowed typos
+     */
+    private static boolean hasWordWithTypo(String name, String query) {
+        int maxTypos = query.length() >= 8 ? 2 : query.length() >= 4 ? 1 : 0;
+        if (maxTypos == 0) {
+            return false;
+        }
+
+        int wordStart = 0;
+        while (wordStart < name.length()) {
+            int wordEnd = name.indexOf(' ', wordStart);
+            if (wordEnd < 0) {
+                wordEnd = name.length();
+            }
+            //compare with the start of the word as long as the query, give or take the typos
+            int prefixEnd = Math.min(wordEnd, wordStart + query.length() + maxTypos);
+            if (editDistance(query, name, wordStart, prefixEnd, maxTypos) <= maxTypos) {
+                return true;
+            }
+            wordStart = wordEnd + 1;
+        }
+        return false;
+    }
+
+    /**
+     * Finds the fewest edits from the query to any prefix of part of the name
+     * @param query the normalized search
+     * @param name the normalized name
+     * @param start of the part
+     * @param end of the part
+     * @param maxTypos edits after which it stops early
+     * @return the edits needed, or more than maxTypos
+     */
+    private static int editDistance(String query, String name, int start, int end, int maxTypos) {
+        int length = end - start;
+        int[] previous = new int[length + 1];
+        int[] current = new int[length + 1];
+        for (int j = 0; j <= length; j++) {
+            previous[j] = j;
+        }
+
+        for (int i = 1; i <= query.length(); i++) {
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= length; j++) {
+                int substitution = previous[j - 1] + (query.charAt(i - 1) == name.charAt(start + j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > maxTypos) {
+                return rowMin;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        //the query may match a prefix of the word, so take the best column
+        int best = previous[0];
+        for (int j = 1; j <= length; j++) {
+            best = Math.min(best, previous[j]);
+        }
+        return best;
+    }
+
+    /**
+     * Lowercases text and turns runs of anything but letters and digits into one space
+     * @param text to normalize, may be null
+     * @return the normalized text
+     */
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+
+        StringBuilder normalized = new StringBuilder(text.length());
+        String lowercased = text.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < lowercased.length(); i++) {
+            char c = lowercased.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(c);
+            }
+            else if (normalized.length() > 0 && normalized.charAt(normalized.length() - 1) != ' ') {
+                normalized.append(' ');
+            }
+        }
+
+        int length = normalized.length();
+        if (length > 0 && normalized.charAt(length - 1) == ' ') {
+            normalized.setLength(length - 1);
+        }
+        return normalized.toString();
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * @author Jett Thistle
+ * @author Kirtana Nidamarti
+ */
+
+package edu.uga.cs.aura;
+
+import com.google.firebase.database.Exclude;
+
+/**
+ * creates the group messages, read straight from GroupMessages/<groupKey>/<messageID>
+ */
+public class GroupMessage {
+    private String messageID, message, userDisplayName, fromID;
+    private int tone;
+    private long timestamp;
+    private boolean tonePending;
+
+    /**
+     * Empty constructor
+     */
+    public GroupMessage() {
+        //default needed for DataSnapshot
+    }
+
+    /**
+     * Constructor with all the information about the group message
+     * @param messageID the key of the message in the group
+     * @param message content of the message
+     * @param tone of the message
+     * @param userDisplayName name of the sender
+     */
+    public GroupMessage(String messageID, String message, int tone, String userDisplayName) {
+        this.messageID = messageID;
+        this.message = message;
+        this.tone = tone;
+        this.userDisplayName = userDisplayName;
+    }
+
+    /**
+     * gets the ID of the message, which is the key of the message and not stored in it
+     * @return the ID
+     */
+    @Exclude
+    public String getMessageID() {
+        return messageID;
+    }
+
+    /**
+     * sets the ID of the message
+     * @param messageID ID of the message
+     */
+    @Exclude
+    public void setMessageID(String messageID) {
+        this.messageID = messageID;
+    }
+
+    /**
+     * gets the content of the message
+     * @return the message
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * sets the content of the message
+     * @param message content
+     */
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    /**
+     * gets the tone of the message
+     * @return the tone
+     */
+    public int getTone() {
+        return tone;
+    }
+
+    /**
+     * sets the tone of the message
+     * @param tone of the message
+     */
+    public void setTone(int tone) {
+        this.tone = tone;
+    }
+
+    /**
+     * gets the name of the person who sent the message
+     * @return the name
+     */
+    public String getUserDisplayName() {
+        return userDisplayName;
+    }
+
+    /**
+     * sets the name of the person who sent the message
+     * @param userDisplayName name of the person who sent the message
+     */
+    public void setUserDisplayName(String userDisplayName) {
+        this.userDisplayName = userDisplayName;
+    }
+
+    /**
+     * gets the ID of the person who sent the message, null for messages sent before it was stored
+     * @return the ID
+     */
+    public String getFromID() {
+        return fromID;
+    }
+
+    /**
+     * sets the ID of the person who sent the message
+     * @param fromID ID of the person who sent the message
+     */
+    public void setFromID(String fromID) {
+        this.fromID = fromID;
+    }
+
+    /**
+     * gets the time the message was sent in milliseconds, 0 for messages sent before it was stored
+     * @return the time
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * sets the time the message was sent
+     * @param timestamp in milliseconds
+     */
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * gets whether the tone of the message is still being analyzed
+     * @return true until the tone has been added
+     */
+    public boolean isTonePending() {
+        return tonePending;
+    }
+
+    /**
+     * sets whether the tone of the message is still being analyzed
+     * @param tonePending true until the tone has been added
+     */
+    public void setTonePending(boolean tonePending) {
+        this.tonePending = tonePending;
+    }
+}
@@ -7,9 +7,6 @@ package edu.uga.cs.aura;
 
 import android.app.Activity;
 import android.content.Intent;
-import android.graphics.Color;
-import android.graphics.drawable.GradientDrawable;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.text.TextUtils;
 import android.view.Menu;
@@ -18,8 +15,6 @@ import android.view.View;
 import android.view.inputmethod.InputMethodManager;
 import android.widget.EditText;
 import android.widget.ImageButton;
-import android.widget.LinearLayout;
-import android.widget.ScrollView;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -27,6 +22,8 @@ import androidx.annotation.NonNull;
 import androidx.appcompat.app.ActionBar;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.database.ChildEventListener;
@@ -35,17 +32,11 @@ import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
 import com.google.firebase.database.ValueEventListener;
-import com.ibm.cloud.sdk.core.security.IamAuthenticator;
-import com.ibm.watson.tone_analyzer.v3.ToneAnalyzer;
-import com.ibm.watson.tone_analyzer.v3.model.ToneAnalysis;
-import com.ibm.watson.tone_analyzer.v3.model.ToneOptions;
-import com.ibm.watson.tone_analyzer.v3.model.ToneScore;
 import com.mikhaellopez.circularimageview.CircularImageView;
 import com.squareup.picasso.Picasso;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -53,16 +44,11 @@ import java.util.List;
  */
 public class GroupMessageActivity extends AppCompatActivity {
 
-    private final int [] TONE_COLORS = new int [] {
-            Color.parseColor("#e82754"), //anger (disgust)
-            Color.parseColor("#68f046"), //joy
-            Color.parseColor("#07b0f2"), //sadness (fear)
-            Color.GRAY
-    };
-
     private ImageButton sendMessageButton;
     private EditText userMessageInput;
-    private ScrollView messagesScrollView;
+    private RecyclerView groupMessagesRecyclerView;
+    private GroupMessageAdapter groupMessageAdapter;
+    private final List<GroupMessage> groupMessagesList = new ArrayList<GroupMessage>();
 
     private Toolbar groupDisplayToolbar;
     private ActionBar actionBar;
@@ -70,7 +56,9 @@ public class GroupMessageActivity extends AppCompatActivity {
     private TextView groupName, groupDescription;
 
     private FirebaseAuth auth;
-    private DatabaseReference dbUsersRef, dbCurrentGroupRef, dbAuraRef;
+    private DatabaseReference dbUsersRef, dbCurrentGroupRef, dbGroupMessagesRef;
+    private ChildEventListener groupMessagesListener;
+    private GroupMessageMigration groupMessageMigration;
 
     private String currentGroupKey, currentUserID, currentUserDisplayName, currentGroupOwner;
 
@@ -90,7 +78,12 @@ public class GroupMessageActivity extends AppCompatActivity {
         currentUserID = auth.getCurrentUser().getUid();
         dbUsersRef = FirebaseDatabase.getInstance().getReference().child("Users");
         dbCurrentGroupRef = FirebaseDatabase.getInstance().getReference().child("Groups").child(currentGroupKey);
-        dbAuraRef = dbUsersRef.child(currentUserID).child("aura");
+        dbGroupMessagesRef = FirebaseDatabase.getInstance().getReference().child("GroupMessages").child(currentGroupKey);
+        groupMessageMigration = new GroupMessageMigration(currentGroupKey);
+
+        ToneCache.getInstance().load(getApplicationContext());
+        Outbox.getInstance().start(this);
+        AuraAggregator.getInstance().recomputeGroupIfStale(this, currentGroupKey);
 
         InitializeFields();
 
@@ -144,7 +137,12 @@ public class GroupMessageActivity extends AppCompatActivity {
     protected void onStart() {
         super.onStart();
 
-        dbCurrentGroupRef.addChildEventListener(new ChildEventListener() {
+        ToneAnalysisService.getInstance().warmUp();
+
+        //messages sent from older versions of the app are moved to GroupMessages, then shown from there
+        groupMessageMigration.start();
+
+        groupMessagesListener = dbGroupMessagesRef.addChildEventListener(new ChildEventListener() {
             /**
              * Overrides the onChildAdded method to add the messages to the display and scroll down
              * @param dataSnapshot from the database
@@ -154,12 +152,12 @@ public class GroupMessageActivity extends AppCompatActivity {
             public void onChildAdded(DataSnapshot dataSnapshot, String s) {
                 if (dataSnapshot.exists()) {
                     DisplayMessages(dataSnapshot);
-                    messagesScrollView.fullScroll(ScrollView.FOCUS_DOWN);
+                    groupMessagesRecyclerView.scrollToPosition(groupMessageAdapter.getItemCount() - 1);
                 }
             }
 
             /**
-             * Overrides the onChildChanged method to display the message
+             * Overrides the onChildChanged method to update the message in place
              * @param dataSnapshot from the database
              * @param s the string of the message
              */
@@ -170,9 +168,13 @@ public class GroupMessageActivity extends AppCompatActivity {
                 }
             }
 
+            /**
+             * Overrides the onChildRemoved method to remove the message from the display
+             * @param dataSnapshot from the database
+             */
             @Override
             public void onChildRemoved(DataSnapshot dataSnapshot) {
-
+                groupMessageAdapter.removeMessage(dataSnapshot.getKey());
             }
 
             @Override
@@ -187,6 +189,36 @@ public class GroupMessageActivity extends AppCompatActivity {
         });
     }
 
+    /**
+     * Overrides the onStop method to stop listening for messages and save the tones that were
+     * cached while the chat was open
+     */
+    @Override
+    protected void onStop() {
+        super.onStop();
+
+        ToneAnalysisService.getInstance().coolDown();
+
+        //onStart adds it again, the messages it replays replace the ones already shown
+        if (groupMessagesListener != null) {
+            dbGroupMessagesRef.removeEventListener(groupMessagesListener);
+            groupMessagesListener = null;
+        }
+        groupMessageMigration.stop();
+
+        ToneCache.getInstance().save();
+    }
+
+    /**
+     * Overrides the onDestroy method to stop waiting on the tone API for this group's messages
+     */
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+
+        ToneWorkQueue.getInstance().cancelAll(this);
+    }
+
 
     /**
      * Overrides the onCreateOptionsMenu to create the menu information for the groups page
@@ -249,7 +281,12 @@ public class GroupMessageActivity extends AppCompatActivity {
     {
         sendMessageButton = findViewById(R.id.send_message_button);
         userMessageInput = findViewById(R.id.input_group_message);
-        messagesScrollView = findViewById(R.id.my_scroll_view);
+        groupMessagesRecyclerView = findViewById(R.id.groupMessageRecyclerView);
+        LinearLayoutManager linearLayoutManager = new LinearLayoutManager(this);
+        linearLayoutManager.setStackFromEnd(true);
+        groupMessagesRecyclerView.setLayoutManager(linearLayoutManager);
+        groupMessageAdapter = new GroupMessageAdapter(groupMessagesList, currentUserID);
+        groupMessagesRecyclerView.setAdapter(groupMessageAdapter);
         groupDisplayToolbar = findViewById(R.id.groupDisplayToolbar);
         setSupportActionBar(groupDisplayToolbar);
         actionBar = getSupportActionBar();
@@ -284,6 +321,7 @@ public class GroupMessageActivity extends AppCompatActivity {
                 if (dataSnapshot.exists())
                 {
                     currentUserDisplayName = dataSnapshot.child("displayName").getValue(String.class);
+                    groupMessageAdapter.setCurrentUserDisplayName(currentUserDisplayName);
                 }
             }
 
@@ -298,7 +336,8 @@ public class GroupMessageActivity extends AppCompatActivity {
 
 
     /**
-     * Saves the message info to the database
+     * Saves the message info to the database right away with a pending tone,
+     * the tone is added once it has been analyzed
      */
     private void saveMessageInfoToDatabase() {
         String message = userMessageInput.getText().toString();
@@ -311,296 +350,78 @@ public class GroupMessageActivity extends AppCompatActivity {
         }
         else
         {
-            new AnalyzeToneTask(message).execute();
+            String messageKey = dbGroupMessagesRef.push().getKey();
+
+            HashMap<String, Object> messageInfoMap = new HashMap<>();
+            messageInfoMap.put("userDisplayName", currentUserDisplayName);
+            messageInfoMap.put("tone", ToneAnalysisService.TONE_NONE);
+            messageInfoMap.put("tonePending", true);
+            messageInfoMap.put("message", message);
+            messageInfoMap.put("fromID", currentUserID);
+            //the time in the push ID, a placeholder like ServerValue.TIMESTAMP would become the time the Outbox sent it again
+            messageInfoMap.put("timestamp", PushIds.timeOfKey(messageKey));
+
+            //saved to disk before it is sent, so the typed text survives a bad network
+            HashMap<String, Object> messageDetails = new HashMap<>();
+            messageDetails.put(getGroupMessagePath(messageKey), messageInfoMap);
+            String messageWriteID = Outbox.getInstance().enqueue(messageDetails, null);
+
+            analyzeTone(message, messageKey, messageWriteID);
         }
     }
 
 
     /**
-     * Displays previous messages that were already sent to the group
-     * @param dataSnapshot from the database
+     * gets the path of a message in this group from the root of the database
+     * @param messageKey the key of the message
+     * @return the path
      */
-    private void DisplayMessages(DataSnapshot dataSnapshot)
+    private String getGroupMessagePath(String messageKey)
     {
-        Iterator iterator = dataSnapshot.getChildren().iterator();
-
-        while(iterator.hasNext())
-        {
-            String message = ((DataSnapshot)iterator.next()).getValue(String.class);
-            int messageTone = ((DataSnapshot)iterator.next()).getValue(Integer.class);
-            String senderDisplayName = ((DataSnapshot)iterator.next()).getValue(String.class);
-
-            View linearLayoutGroup =  findViewById(R.id.linearLayoutGroup);
-            LinearLayout eachMessage = new LinearLayout(this);
-
-            eachMessage.setLayoutParams(new LinearLayout.LayoutParams(LinearLayout.LayoutParams.MATCH_PARENT, LinearLayout.LayoutParams.WRAP_CONTENT));
-            eachMessage.setOrientation(LinearLayout.HORIZONTAL);
-            LinearLayout.LayoutParams params = (LinearLayout.LayoutParams)eachMessage.getLayoutParams();
-            params.setMargins(20, 10, 20, 10);
-            eachMessage.setLayoutParams(params);
-            eachMessage.setPadding(20, 10, 20, 0);
-
-            TextView dispTextName  = new TextView(this);
-            TextView dispTextMessage = new TextView(this);
-
-            dispTextName.setText(senderDisplayName + ": ");
-            dispTextName.setTextSize(18);
-            dispTextName.setTextColor(Color.BLACK);
-
-            dispTextMessage.setText(message + "\n");
-            dispTextMessage.setTextSize(18);
-            dispTextMessage.setTextColor(Color.BLACK);
-
-            //this is the part that I added in for the gradient
-            int[] colors = {TONE_COLORS[messageTone],Color.parseColor("#fafafa"),Color.parseColor("#fafafa"),Color.parseColor("#fafafa"),Color.parseColor("#fafafa"),Color.parseColor("#fafafa"),Color.parseColor("#fafafa")};
-
-            GradientDrawable gd = new GradientDrawable(
-                    GradientDrawable.Orientation.LEFT_RIGHT, colors);
-
-            gd.setCornerRadius(0f);
-            eachMessage.setBackground(gd);
-
-
-            eachMessage.addView(dispTextName);
-            eachMessage.addView(dispTextMessage);
-            eachMessage.setPadding(10, 20, 10, -40);
-            ((LinearLayout) linearLayoutGroup).addView(eachMessage);
-        }
+        return "GroupMessages/" + currentGroupKey + "/" + messageKey;
     }
 
 
     /**
-     * creates the AnalyzeToneTask to analyze the tone of texts
+     * Displays a message that was sent to the group, or updates it if it is already displayed
+     * @param dataSnapshot of the message from the database
      */
-    private class AnalyzeToneTask extends AsyncTask<String,Integer,Integer> {
-
-        private final String API_KEY = "REPLACE_WITH_KEY" //Removed our API key for safety
-        private final String URL = "https://gateway-wdc.watsonplatform.net/tone-analyzer/api";
-        private final String VERSION = "2017-09-21";
-        private IamAuthenticator authenticator;
-        private ToneAnalyzer toneAnalyzer;
-        private ToneOptions toneOptions;
-        private ToneAnalysis toneAnalysis;
-        private String text;
-
-        /**
-         * Constructor analyze the tone
-         * @param message the tone is analyzed for this string
-         */
-        public AnalyzeToneTask(String message){
-            authenticator  = new IamAuthenticator(API_KEY);
-            toneAnalyzer = new ToneAnalyzer(VERSION, authenticator);
-            toneAnalyzer.setServiceUrl(URL);
-            text = message;
-        }
-
-        /**
-         * Sends the text to the tone analyzing API
-         * @param strings of the message
-         * @return Integer of the tone result from the API
-         */
-        @Override
-        protected Integer doInBackground(String... strings) {
-            return sendTextToToneAPI(text);
-        }
-
-        /**
-         * Overrides the onPostExecute to add the tone and other information to the database
-         * @param toneResult result from the API
-         */
-        @Override
-        protected void onPostExecute(Integer toneResult) {
-
-            String messageKey = dbCurrentGroupRef.push().getKey();
-
-            updateUserAura(toneResult);
-
-            HashMap<String, Object> groupMessageKey = new HashMap<>();
-            dbCurrentGroupRef.updateChildren(groupMessageKey);
-
-            HashMap<String, Object> messageInfoMap = new HashMap<>();
-            messageInfoMap.put("userDisplayName", currentUserDisplayName);
-            messageInfoMap.put("tone", toneResult);
-            messageInfoMap.put("message", text);
-            dbCurrentGroupRef.child(messageKey).updateChildren(messageInfoMap);
-        }
-
-        /**
-         * Sends the text to the API to be analyzed
-         * @param text to be analyzed
-         * @return int the color to be displayed for each text from the TONE_COLORS array
-         */
-        private int sendTextToToneAPI(String text){
-
-            toneOptions = new ToneOptions.Builder()
-                    .tones(Arrays.asList(ToneOptions.Tone.EMOTION))
-                    .sentences(false)
-                    .text(text)
-                    .build();
-
-            toneAnalysis = toneAnalyzer.tone(toneOptions).execute().getResult();
-            List<ToneScore> toneScores = toneAnalysis.getDocumentTone().getTones();
-
-            //if there is no tone found, just return default value (5)
-            if (toneScores == null || toneScores.isEmpty() || toneScores.get(0).getScore() < .7){
-                return 3;
-            }
-
-            String toneResult = toneAnalysis.getDocumentTone().getTones().get(0).getToneId();
-
-            int toneInt;
-            switch(toneResult){
-                case "anger":
-                case "disgust":
-                    toneInt = 0; //r
-                    break;
-
-                case "joy":
-                    toneInt = 1; //g
-                    break;
-
-                case "sadness":
-                case "fear":
-                    toneInt = 2; //b
-                    break;
-
-                default:
-                    toneInt = 3;
-                    break;
-            }
-
-            return toneInt;
+    private void DisplayMessages(DataSnapshot dataSnapshot)
+    {
+        GroupMessage groupMessage = dataSnapshot.getValue(GroupMessage.class);
+        groupMessage.setMessageID(dataSnapshot.getKey());
 
-        }
+        groupMessageAdapter.upsertMessage(groupMessage);
     }
 
-    /**
-     * updates the user's aura
-     * @param toneResult the tone of the user
-     */
-    private void updateUserAura(final int toneResult) {
-        //if tone not found or not strong enough
-        if (toneResult == 3){
-            return;
-        }
-
-        updateGroupAura(toneResult);
-
-        dbAuraRef.addListenerForSingleValueEvent(new ValueEventListener() {
-            /**
-             * Overrides the onDataChange to update the user's aura if it is changed in the database
-             * @param dataSnapshot to be watched from the database
-             */
-            @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                if (dataSnapshot.exists()){
-                    int userAura = dataSnapshot.getValue(Integer.class).intValue();
-                    int [] userAuraRGB = {Color.red(userAura), Color.green(userAura), Color.blue(userAura)};
-
-                    /*
-                     * Compare r, g, and b value for overall user aura and the tone of current message
-                     * shifts user aura 30 units towards (r/g/b) value of current message
-                     * If user aura capped, shift less aggressively
-                     */
-
-                    for(int i = 0; i < userAuraRGB.length; i++){
-                        //if not the color of tone found, then its 0 - val, if it is the color, 255 - val
-                        int difference = i == toneResult ? 255 - userAuraRGB[i] : 0 - userAuraRGB[i];
-
-                        if (userAuraRGB[i] == 255){
-                            if (difference != 0){
-                                userAuraRGB[i]-=60;
-                            }
-                        }
-                        else if (userAuraRGB[i] == 0){
-                            if (difference != 0){
-                                userAuraRGB[i]+=60;
-                            }
-                        }
-                        else if (difference <= -15){
-                            userAuraRGB[i]-=15;
-                        }
-                        else if (difference >= 30){
-                            userAuraRGB[i]+=30;
-                        }
-                        else {
-                            userAuraRGB[i]+=difference;
-                        }
-
-                        dbAuraRef.setValue(Color.rgb(userAuraRGB[0], userAuraRGB[1],userAuraRGB[2]));
-
-                    }
-                }
-            }
-
-            @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
-
-            }
-        });
-
-    }
 
     /**
-     * Updates the group aura everytime a message is sent to the group
-     * @param
-     * @return
+     * Finds the tone of a message that was already sent and adds it to the message
+     * @param message the tone is analyzed for this string
+     * @param messageKey the key of the sent message to add the tone to
+     * @param messageWriteID the Outbox ID of the message's write, the tone is written after it
      */
-    private void updateGroupAura(final int toneResult) {
-
-        dbCurrentGroupRef.child("groupAura").addListenerForSingleValueEvent(new ValueEventListener() {
+    private void analyzeTone(String message, final String messageKey, final String messageWriteID) {
+        ToneWorkQueue.getInstance().submit(this, message, new ToneWorkQueue.OnToneListener() {
             /**
-             * Overrides the onDataChange method to display the groups aura if it changes in the database
-             * @param dataSnapshot the information that is being watched in the database
+             * Overrides the onTone method to add the tone to the message
+             * @param toneResult the tone of the message
              */
             @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                if (dataSnapshot.exists()){
-                    int groupAura = dataSnapshot.getValue(Integer.class);
-                    int [] groupAuraRGB = {Color.red(groupAura), Color.green(groupAura), Color.blue(groupAura)};
-
-                    /*
-                     * Compare r, g, and b value for overall user aura and the tone of current message
-                     * shifts user aura 30 units towards (r/g/b) value of current message
-                     * If user aura capped, shift less aggressively
-                     */
-
-                    for(int i = 0; i < groupAuraRGB.length; i++){
-                        //if not the color of tone found, then its 0 - val, if it is the color, 255 - val
-                        int difference = (i == toneResult) ? 255 - groupAuraRGB[i] : 0 - groupAuraRGB[i];
-
-                        if (groupAuraRGB[i] == 255){
-                            if (difference != 0){
-                                groupAuraRGB[i]-=10;
-                            }
-                        }
-                        else if (groupAuraRGB[i] == 0){
-                            if (difference != 0){
-                                groupAuraRGB[i]+=10;
-                            }
-                        }
-                        else if (difference <= -30){
-                            groupAuraRGB[i]-=30;
-                        }
-                        else if (difference >= 30){
-                            groupAuraRGB[i]+=30;
-                        }
-                        else {
-                            groupAuraRGB[i]+=difference;
-                        }
-
-                        dbCurrentGroupRef.child("groupAura").setValue(Color.rgb(groupAuraRGB[0], groupAuraRGB[1], groupAuraRGB[2]));
-
-                    }
-                }
-            }
-
-            @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
-
+            public void onTone(int toneResult) {
+
+                HashMap<String, Object> toneInfoMap = new HashMap<>();
+                toneInfoMap.put(getGroupMessagePath(messageKey) + "/tone", toneResult);
+                toneInfoMap.put(getGroupMessagePath(messageKey) + "/tonePending", null);
+                AuraAggregator.putTone(toneInfoMap, AuraAggregator.getUserHistoryPath(currentUserID), messageKey, toneResult);
+                AuraAggregator.putTone(toneInfoMap, AuraAggregator.getGroupHistoryPath(currentGroupKey), messageKey, toneResult);
+                //held until the message is written, so writing the message again cannot reset its tone
+                Outbox.getInstance().enqueueAfter(messageWriteID, toneInfoMap, null);
+
+                AuraAggregator.getInstance().scheduleUser(currentUserID);
+                AuraAggregator.getInstance().scheduleGroup(currentGroupKey);
             }
         });
-
     }
 
 }
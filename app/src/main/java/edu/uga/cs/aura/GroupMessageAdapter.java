@@ -0,0 +1,226 @@
+/**
+ * @author Jett Thistle
+ * @author Kirtana Nidamarti
+ */
+
+package edu.uga.cs.aura;
+
+import android.graphics.Color;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.GradientDrawable;
+import android.text.TextUtils;
+import android.view.Gravity;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * creates the Group Message Adapter, so only the group messages on screen have views
+ */
+public class GroupMessageAdapter extends RecyclerView.Adapter<GroupMessageAdapter.GroupMessageViewHolder> {
+
+    public static final int VIEW_TYPE_SENT = 0;
+    public static final int VIEW_TYPE_RECEIVED = 1;
+
+    private final int [] TONE_COLORS = new int [] {
+            Color.parseColor("#e82754"), //anger (disgust)
+            Color.parseColor("#68f046"), //joy
+            Color.parseColor("#07b0f2"), //sadness (fear)
+            Color.GRAY
+    };
+    private final int BACKGROUND_COLOR = Color.parseColor("#fafafa");
+
+    //one background per view type and tone, each row gets a copy sharing the same state
+    private final Drawable [][] toneBackgrounds = new Drawable[2][TONE_COLORS.length];
+
+    private List<GroupMessage> groupMessagesList;
+    private final Map<String, Integer> positionsByMessageID = new HashMap<String, Integer>();
+    private String currentUserID, currentUserDisplayName;
+
+    /**
+     * Constructor to add the messages for the list
+     * @param groupMessagesList list of the messages in the group
+     * @param currentUserID ID of the current user, used to tell sent messages from received ones
+     */
+    public GroupMessageAdapter(List<GroupMessage> groupMessagesList, String currentUserID)
+    {
+        this.groupMessagesList = groupMessagesList;
+        this.currentUserID = currentUserID;
+        indexPositions(0);
+
+        for (int tone = 0; tone < TONE_COLORS.length; tone++) {
+            toneBackgrounds[VIEW_TYPE_RECEIVED][tone] = createToneBackground(tone, GradientDrawable.Orientation.LEFT_RIGHT);
+            toneBackgrounds[VIEW_TYPE_SENT][tone] = createToneBackground(tone, GradientDrawable.Orientation.RIGHT_LEFT);
+        }
+    }
+
+    /**
+     * creates the GroupMessageViewHolder
+     */
+    public static class GroupMessageViewHolder extends RecyclerView.ViewHolder
+    {
+        LinearLayout rootView;
+        TextView senderNameText, messageText;
+
+        /**
+         * Constructor for the holder that has the information about each group message
+         * @param itemView that the information is added to
+         */
+        public GroupMessageViewHolder(@NonNull View itemView)
+        {
+            super(itemView);
+
+            rootView = itemView.findViewById(R.id.groupMessageRootView);
+            senderNameText = itemView.findViewById(R.id.groupMessageSenderName);
+            messageText = itemView.findViewById(R.id.groupMessageText);
+        }
+    }
+
+    /**
+     * sets the name of the current user, used to tell sent messages from received ones
+     * for messages sent before the sender's ID was stored
+     * @param currentUserDisplayName name of the current user
+     */
+    public void setCurrentUserDisplayName(String currentUserDisplayName)
+    {
+        if (!TextUtils.equals(this.currentUserDisplayName, currentUserDisplayName)) {
+            this.currentUserDisplayName = currentUserDisplayName;
+            notifyItemRangeChanged(0, groupMessagesList.size());
+        }
+    }
+
+    /**
+     * Overrides the getItemViewType to tell sent messages from received ones
+     * @param position of the message
+     * @return VIEW_TYPE_SENT or VIEW_TYPE_RECEIVED
+     */
+    @Override
+    public int getItemViewType(int position)
+    {
+        GroupMessage groupMessage = groupMessagesList.get(position);
+        if (groupMessage.getFromID() != null) {
+            return groupMessage.getFromID().equals(currentUserID) ? VIEW_TYPE_SENT : VIEW_TYPE_RECEIVED;
+        }
+        if (currentUserDisplayName != null && currentUserDisplayName.equals(groupMessage.getUserDisplayName())) {
+            return VIEW_TYPE_SENT;
+        }
+        return VIEW_TYPE_RECEIVED;
+    }
+
+    /**
+     * Overrides the onCreateViewHolder to inflate the view for one group message
+     * @param parent that the view is added to
+     * @param viewType VIEW_TYPE_SENT or VIEW_TYPE_RECEIVED
+     * @return the GroupMessageViewHolder
+     */
+    @NonNull
+    @Override
+    public GroupMessageViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType)
+    {
+        View view = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.group_message_display, parent, false);
+
+        GroupMessageViewHolder holder = new GroupMessageViewHolder(view);
+        holder.rootView.setGravity(viewType == VIEW_TYPE_SENT ? Gravity.END : Gravity.START);
+        return holder;
+    }
+
+    /**
+     * Overrides the onBindViewHolder to show a group message
+     * @param holder that holds the views
+     * @param position of the message
+     */
+    @Override
+    public void onBindViewHolder(@NonNull GroupMessageViewHolder holder, int position)
+    {
+        GroupMessage groupMessage = groupMessagesList.get(position);
+        int tone = groupMessage.getTone();
+        if (tone < 0 || tone >= TONE_COLORS.length) {
+            tone = TONE_COLORS.length - 1;
+        }
+
+        holder.senderNameText.setText(groupMessage.getUserDisplayName() + ": ");
+        holder.messageText.setText(groupMessage.getMessage());
+        holder.rootView.setBackground(toneBackgrounds[holder.getItemViewType()][tone].getConstantState().newDrawable());
+    }
+
+    /**
+     * Overrides the getItemCount to return the size of the messages list
+     * @return the number of messages in the list
+     */
+    @Override
+    public int getItemCount()
+    {
+        return groupMessagesList.size();
+    }
+
+    /**
+     * adds a message to the end of the list, or replaces it in place if it is already shown
+     * @param groupMessage the new or changed message
+     */
+    public void upsertMessage(GroupMessage groupMessage)
+    {
+        Integer position = positionsByMessageID.get(groupMessage.getMessageID());
+        if (position != null) {
+            groupMessagesList.set(position, groupMessage);
+            notifyItemChanged(position);
+            return;
+        }
+
+        groupMessagesList.add(groupMessage);
+        positionsByMessageID.put(groupMessage.getMessageID(), groupMessagesList.size() - 1);
+        notifyItemInserted(groupMessagesList.size() - 1);
+    }
+
+    /**
+     * removes a message from the list
+     * @param messageID ID of the removed message
+     */
+    public void removeMessage(String messageID)
+    {
+        Integer position = positionsByMessageID.remove(messageID);
+        if (position == null) {
+            return;
+        }
+
+        groupMessagesList.remove((int) position);
+        indexPositions(position);
+        notifyItemRemoved(position);
+    }
+
+    /**
+     * updates the position of every message from a position to the end of the list
+     * @param start first position to update
+     */
+    private void indexPositions(int start)
+    {
+        for (int i = start; i < groupMessagesList.size(); i++) {
+            positionsByMessageID.put(groupMessagesList.get(i).getMessageID(), i);
+        }
+    }
+
+    /**
+     * creates the gradient that shows the tone of a message on the side it was sent from
+     * @param tone of the message
+     * @param orientation that the gradient fades in
+     * @return the background
+     */
+    private Drawable createToneBackground(int tone, GradientDrawable.Orientation orientation)
+    {
+        int[] colors = {TONE_COLORS[tone], BACKGROUND_COLOR, BACKGROUND_COLOR, BACKGROUND_COLOR,
+                BACKGROUND_COLOR, BACKGROUND_COLOR, BACKGROUND_COLOR};
+
+        GradientDrawable gd = new GradientDrawable(orientation, colors);
+        gd.setCornerRadius(0f);
+        return gd;
+    }
+}
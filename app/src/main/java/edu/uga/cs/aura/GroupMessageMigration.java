@@ -0,0 +1,280 @@
+/**
+ * @author Jett Thistle
+ * @author Kirtana Nidamarti
+ */
+
+package edu.uga.cs.aura;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Moves group messages that were stored next to the group's information in Groups/<groupKey>
+ * into their own GroupMessages/<groupKey> tree, so reading a group's name or image does not
+ * also download its whole history.
+ *
+ * migrateAllOnce walks every group a page at a time, in key order, and moves the messages of
+ * each page with one multi-path update. The key of the last group moved is saved after each
+ * page, so a pass that is stopped part way goes on from there the next time the app starts, and
+ * the pass is only marked done after the last page was written. The same update fills in the
+ * GroupDirectory entry of each group of the page, for groups made before the directory.
+ *
+ * Older versions of the app still push messages into Groups/<groupKey> after the pass, so an
+ * open group chat also listens to the keys of Groups/<groupKey> that are push IDs, which only
+ * messages have, and moves each message as it shows up, so it is shown with the others. A
+ * message is moved by writing each of its fields into the new copy and removing the old one in
+ * the same update, so moving it twice, or again after an old version adds a field to it, never
+ * loses or duplicates anything.
+ */
+public class GroupMessageMigration {
+
+    private static final String TAG = "GroupMessageMigration";
+
+    //every push ID made before the year 2100 starts with '-', the group's information keys never do
+    private static final String PUSH_ID_START = "-";
+    private static final String PUSH_ID_END = "-\uf8ff";
+
+    private static final String PREFS_NAME = "groupMessageMigration";
+    private static final String PREF_DONE = "done";
+    private static final String PREF_CURSOR = "cursor";
+    //every group of a page is downloaded with its history, so keep pages small
+    private static final int PAGE_SIZE = 10;
+
+    private static boolean migrating;
+
+    private final DatabaseReference dbRootRef = FirebaseDatabase.getInstance().getReference();
+    private final String groupKey;
+    private final Query oldMessagesQuery;
+    private ChildEventListener oldMessagesListener;
+
+    /**
+     * Constructor for the migration of one group
+     * @param groupKey of the group
+     */
+    public GroupMessageMigration(String groupKey) {
+        this.groupKey = groupKey;
+        this.oldMessagesQuery = dbRootRef.child("Groups").child(groupKey).orderByKey()
+                .startAt(PUSH_ID_START).endAt(PUSH_ID_END);
+    }
+
+    /**
+     * Moves the group's messages that are in the old place, and every one added there until stop
+     */
+    public void start() {
+        if (oldMessagesListener != null) {
+            return;
+        }
+
+        oldMessagesListener = new ChildEventListener() {
+            /**
+             * Overrides the onChildAdded method to move a message in the old place
+             * @param dataSnapshot the message
+             * @param s key of the previous child
+             */
+            @Override
+            public void onChildAdded(@NonNull DataSnapshot dataSnapshot, String s) {
+                move(dataSnapshot);
+            }
+
+            /**
+             * Overrides the onChildChanged method to move the fields an old version added to a message
+             * @param dataSnapshot the message
+             * @param s key of the previous child
+             */
+            @Override
+            public void onChildChanged(@NonNull DataSnapshot dataSnapshot, String s) {
+                move(dataSnapshot);
+            }
+
+            @Override
+            public void onChildRemoved(@NonNull DataSnapshot dataSnapshot) {
+
+            }
+
+            @Override
+            public void onChildMoved(@NonNull DataSnapshot dataSnapshot, String s) {
+
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError databaseError) {
+                Log.d(TAG, "could not read old messages of " + groupKey + ": " + databaseError.getMessage());
+            }
+        };
+        oldMessagesQuery.addChildEventListener(oldMessagesListener);
+    }
+
+    /**
+     * Stops moving messages added to the old place
+     */
+    public void stop() {
+        if (oldMessagesListener != null) {
+            oldMessagesQuery.removeEventListener(oldMessagesListener);
+            oldMessagesListener = null;
+        }
+    }
+
+    /**
+     * Moves the messages of every group out of Groups, once per install
+     * @param context used to remember how far the pass got
+     */
+    public static void migrateAllOnce(Context context) {
+        SharedPreferences prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        if (migrating || prefs.getBoolean(PREF_DONE, false)) {
+            return;
+        }
+        migrating = true;
+
+        migratePage(prefs, prefs.getString(PREF_CURSOR, null));
+    }
+
+    /**
+     * Moves the messages of one page of groups, then goes on to the next page
+     * @param prefs where the pass's progress is saved
+     * @param cursor key of the last group already moved, or null to start with the first group
+     */
+    private static void migratePage(final SharedPreferences prefs, final String cursor) {
+        final DatabaseReference dbRootRef = FirebaseDatabase.getInstance().getReference();
+        DatabaseReference dbGroupsRef = dbRootRef.child("Groups");
+
+        //startAt is inclusive, so ask for one extra, the cursor group was already moved
+        final int limit = cursor == null ? PAGE_SIZE : PAGE_SIZE + 1;
+        Query pageQuery = cursor == null
+                ? dbGroupsRef.orderByKey().limitToFirst(limit)
+                : dbGroupsRef.orderByKey().startAt(cursor).limitToFirst(limit);
+
+        pageQuery.addListenerForSingleValueEvent(new ValueEventListener() {
+            /**
+             * Overrides the onDataChange method to move every message of the page's groups and fill in their directory entries
+             * @param dataSnapshot the page of groups
+             */
+            @Override
+            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                final boolean lastPage = dataSnapshot.getChildrenCount() < limit;
+                String lastKey = cursor;
+                Map<String, Object> updates = new HashMap<String, Object>();
+                for (DataSnapshot groupSnapshot : dataSnapshot.getChildren()) {
+                    lastKey = groupSnapshot.getKey();
+                    addDirectoryEntry(updates, groupSnapshot);
+                    for (DataSnapshot childSnapshot : groupSnapshot.getChildren()) {
+                        if (isPushId(childSnapshot.getKey())) {
+                            addMove(updates, lastKey, childSnapshot);
+                        }
+                    }
+                }
+
+                final String nextCursor = lastKey;
+                dbRootRef.updateChildren(updates, new DatabaseReference.CompletionListener() {
+                    /**
+                     * Overrides the onComplete method to save the progress and move the next page
+                     * @param databaseError why the page could not be moved, or null
+                     * @param databaseReference the root
+                     */
+                    @Override
+                    public void onComplete(DatabaseError databaseError, @NonNull DatabaseReference databaseReference) {
+                        if (databaseError != null) {
+                            //tried again from the same page the next time the app starts
+                            Log.d(TAG, "could not move the messages after " + cursor + ": " + databaseError.getMessage());
+                            migrating = false;
+                            return;
+                        }
+
+                        if (lastPage) {
+                            prefs.edit().putBoolean(PREF_DONE, true).remove(PREF_CURSOR).apply();
+                            migrating = false;
+                            return;
+                        }
+                        prefs.edit().putString(PREF_CURSOR, nextCursor).apply();
+                        migratePage(prefs, nextCursor);
+                    }
+                });
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError databaseError) {
+                Log.d(TAG, "could not read the groups after " + cursor + ": " + databaseError.getMessage());
+                migrating = false;
+            }
+        });
+    }
+
+    /**
+     * checks if a key of Groups/<groupKey> is in the push ID range that only messages have
+     * @param key the key
+     * @return true if it is a message's key
+     */
+    private static boolean isPushId(String key) {
+        return key.compareTo(PUSH_ID_START) >= 0 && key.compareTo(PUSH_ID_END) <= 0;
+    }
+
+    /**
+     * Adds the writes that copy a group's information into its GroupDirectory entry
+     * @param updates the multi-path update to add to
+     * @param groupSnapshot the group
+     */
+    private static void addDirectoryEntry(Map<String, Object> updates, DataSnapshot groupSnapshot) {
+        //a group whose information was deleted only has old messages left
+        if (!groupSnapshot.hasChild("groupName")) {
+            return;
+        }
+
+        String entryPath = GroupDirectory.getEntryPath(groupSnapshot.getKey());
+        for (String field : new String[]{"groupName", "groupDescription", "groupAura", "groupImage"}) {
+            updates.put(entryPath + "/" + field, groupSnapshot.child(field).getValue());
+        }
+    }
+
+    /**
+     * Adds the writes that move one message from Groups/<groupKey> to GroupMessages/<groupKey>
+     * @param moves the multi-path update to add to
+     * @param groupKey of the group
+     * @param messageSnapshot the message in the old place
+     */
+    private static void addMove(Map<String, Object> moves, String groupKey, DataSnapshot messageSnapshot) {
+        //old versions write the key before the fields, there is nothing to move yet
+        if (!messageSnapshot.hasChildren()) {
+            return;
+        }
+
+        String messageKey = messageSnapshot.getKey();
+        for (DataSnapshot field : messageSnapshot.getChildren()) {
+            moves.put("GroupMessages/" + groupKey + "/" + messageKey + "/" + field.getKey(), field.getValue());
+        }
+        moves.put("Groups/" + groupKey + "/" + messageKey, null);
+    }
+
+    /**
+     * Moves one message from Groups/<groupKey> to GroupMessages/<groupKey>
+     * @param messageSnapshot the message in the old place
+     */
+    private void move(DataSnapshot messageSnapshot) {
+        Map<String, Object> moves = new HashMap<String, Object>();
+        addMove(moves, groupKey, messageSnapshot);
+        if (moves.isEmpty()) {
+            return;
+        }
+
+        dbRootRef.updateChildren(moves, new DatabaseReference.CompletionListener() {
+            @Override
+            public void onComplete(DatabaseError databaseError, @NonNull DatabaseReference databaseReference) {
+                if (databaseError != null) {
+                    Log.d(TAG, "could not move a message of " + groupKey + ": " + databaseError.getMessage());
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,403 @@
+/**
+ * @author Jett Thistle
+ * @author Kirtana Nidamarti
+ */
+
+package edu.uga.cs.aura;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Loads the groups a page at a time instead of every group in the database at once.
+ *
+ * Pages are read with orderByKey().startAt(cursor).limitToFirst(pageSize), where the cursor is
+ * the key of the last loaded group, and the next page is loaded once the user scrolls within
+ * prefetchDistance groups of the end. Each page keeps its query's listener so groups that change
+ * or are deleted are updated in place. Group keys are push IDs, so new groups are always after
+ * every loaded group and show up in the last page, or in the next one once it is loaded.
+ *
+ * At most MAX_LOADED_PAGES pages are kept. Loading a page at one end drops the page at the other
+ * end, with its listener and the groups no other page has, and a dropped page before the first
+ * loaded group is read again with endAt(cursor).limitToLast(pageSize) once the user scrolls back
+ * within prefetchDistance groups of the start.
+ */
+public class GroupPager {
+
+    public static final int MAX_LOADED_PAGES = 4;
+
+    private final DatabaseReference dbGroupsRef;
+    private final int pageSize;
+    private final int prefetchDistance;
+
+    private final List<String> groupKeys = new ArrayList<String>();
+    private final List<Group> groups = new ArrayList<Group>();
+    //in key order, the first and last pages are the ones that are dropped
+    private final List<Page> pages = new ArrayList<Page>();
+
+    private OnGroupsChangedListener onGroupsChangedListener;
+    private boolean loading, reachedStart, reachedEnd, started;
+    private int sizeAtEnd;
+
+    /**
+     * Listener for changes to the loaded groups, to notify the adapter showing them
+     */
+    public interface OnGroupsChangedListener {
+        /**
+         * called after groups were added to the list
+         * @param position of the first group added
+         * @param count the number of groups added
+         */
+        void onGroupsInserted(int position, int count);
+
+        /**
+         * called after a group in the list changed
+         * @param position of the group
+         */
+        void onGroupChanged(int position);
+
+        /**
+         * called after a group was removed from the list
+         * @param position the group was at
+         */
+        void onGroupRemoved(int position);
+
+        /**
+         * called after every group was removed from the list
+         */
+        void onGroupsCleared();
+    }
+
+    /**
+     * Constructor for the pager
+     * @param dbGroupsRef the Groups reference
+     * @param pageSize the number of groups read per page
+     * @param prefetchDistance how close to the last loaded group the user scrolls before the next page is read
+     */
+    public GroupPager(DatabaseReference dbGroupsRef, int pageSize, int prefetchDistance) {
+        this.dbGroupsRef = dbGroupsRef;
+        this.pageSize = pageSize;
+        this.prefetchDistance = prefetchDistance;
+    }
+
+    /**
+     * sets the listener told about changes to the loaded groups
+     * @param onGroupsChangedListener the listener
+     */
+    public void setOnGroupsChangedListener(OnGroupsChangedListener onGroupsChangedListener) {
+        this.onGroupsChangedListener = onGroupsChangedListener;
+    }
+
+    /**
+     * gets the keys of the loaded groups, in the same order as getGroups
+     * @return the keys, changed only by the pager
+     */
+    public List<String> getGroupKeys() {
+        return groupKeys;
+    }
+
+    /**
+     * gets the loaded groups in key order
+     * @return the groups, changed only by the pager
+     */
+    public List<Group> getGroups() {
+        return groups;
+    }
+
+    /**
+     * Loads the first page of groups
+     */
+    public void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        reachedStart = true;
+        reachedEnd = false;
+
+        loadNextPage();
+    }
+
+    /**
+     * Stops listening to every page and drops the loaded groups, they are read again on start
+     */
+    public void stop() {
+        started = false;
+        loading = false;
+
+        for (Page page : pages) {
+            page.remove();
+        }
+        pages.clear();
+
+        groupKeys.clear();
+        groups.clear();
+        if (onGroupsChangedListener != null) {
+            onGroupsChangedListener.onGroupsCleared();
+        }
+    }
+
+    /**
+     * Loads the next or previous page if the user scrolled within prefetchDistance of the last or
+     * first loaded group
+     * @param firstVisiblePosition position of the first group on the screen
+     * @param lastVisiblePosition position of the last group on the screen
+     */
+    public void onScrolledTo(int firstVisiblePosition, int lastVisiblePosition) {
+        if (lastVisiblePosition >= groups.size() - 1 - prefetchDistance) {
+            loadNextPage();
+        }
+        else if (firstVisiblePosition <= prefetchDistance) {
+            loadPreviousPage();
+        }
+    }
+
+    /**
+     * Loads the page after the last loaded group, groups added since the end was reached are
+     * followed by another page
+     */
+    private void loadNextPage() {
+        if (!started || loading || (reachedEnd && groups.size() == sizeAtEnd)) {
+            return;
+        }
+        loading = true;
+
+        final String cursor = groupKeys.isEmpty() ? null : groupKeys.get(groupKeys.size() - 1);
+        //startAt is inclusive, so ask for one extra, the cursor group is already loaded
+        final int limit = cursor == null ? pageSize : pageSize + 1;
+        Query pageQuery = cursor == null
+                ? dbGroupsRef.orderByKey().limitToFirst(limit)
+                : dbGroupsRef.orderByKey().startAt(cursor).limitToFirst(limit);
+
+        Page page = new Page(pageQuery);
+        pages.add(page);
+        page.listen();
+
+        //value events come after the child events of the same query, and share its download
+        pageQuery.addListenerForSingleValueEvent(new ValueEventListener() {
+            /**
+             * Overrides the onDataChange method to finish loading the page
+             * @param dataSnapshot the page
+             */
+            @Override
+            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                if (!started) {
+                    return;
+                }
+
+                loading = false;
+                reachedEnd = dataSnapshot.getChildrenCount() < limit;
+                if (pages.size() > MAX_LOADED_PAGES) {
+                    dropPage(0);
+                    reachedStart = false;
+                }
+                sizeAtEnd = groups.size();
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError databaseError) {
+                loading = false;
+            }
+        });
+    }
+
+    /**
+     * Reads again the page before the first loaded group, after it was dropped
+     */
+    private void loadPreviousPage() {
+        if (!started || loading || reachedStart || groupKeys.isEmpty()) {
+            return;
+        }
+        loading = true;
+
+        //endAt is inclusive, so ask for one extra, the cursor group is already loaded
+        final int limit = pageSize + 1;
+        Query pageQuery = dbGroupsRef.orderByKey().endAt(groupKeys.get(0)).limitToLast(limit);
+
+        Page page = new Page(pageQuery);
+        pages.add(0, page);
+        page.listen();
+
+        //value events come after the child events of the same query, and share its download
+        pageQuery.addListenerForSingleValueEvent(new ValueEventListener() {
+            /**
+             * Overrides the onDataChange method to finish loading the page and drop the last one
+             * @param dataSnapshot the page
+             */
+            @Override
+            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                if (!started) {
+                    return;
+                }
+
+                loading = false;
+                reachedStart = dataSnapshot.getChildrenCount() < limit;
+                if (pages.size() > MAX_LOADED_PAGES) {
+                    dropPage(pages.size() - 1);
+                    reachedEnd = false;
+                }
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError databaseError) {
+                loading = false;
+            }
+        });
+    }
+
+    /**
+     * Stops listening to a page and removes the groups no other page has
+     * @param index of the page
+     */
+    private void dropPage(int index) {
+        Page dropped = pages.remove(index);
+        dropped.remove();
+
+        for (String key : dropped.keys) {
+            if (!isInAnyPage(key)) {
+                removeGroup(key);
+            }
+        }
+    }
+
+    /**
+     * checks if a loaded page has a group, pages overlap at their cursors
+     * @param key of the group
+     * @return true if a page has it
+     */
+    private boolean isInAnyPage(String key) {
+        for (Page page : pages) {
+            if (page.keys.contains(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes a group from the list if it is loaded
+     * @param key of the group
+     */
+    private void removeGroup(String key) {
+        int index = Collections.binarySearch(groupKeys, key);
+        if (index < 0) {
+            return;
+        }
+
+        groupKeys.remove(index);
+        groups.remove(index);
+        if (onGroupsChangedListener != null) {
+            onGroupsChangedListener.onGroupRemoved(index);
+        }
+    }
+
+    /**
+     * Adds a group in key order, or replaces it if it is already loaded
+     * @param dataSnapshot the group
+     */
+    private void putGroup(DataSnapshot dataSnapshot) {
+        Group group = dataSnapshot.getValue(Group.class);
+        if (group == null || group.getGroupName() == null) {
+            return;
+        }
+
+        int index = Collections.binarySearch(groupKeys, dataSnapshot.getKey());
+        if (index >= 0) {
+            groups.set(index, group);
+            if (onGroupsChangedListener != null) {
+                onGroupsChangedListener.onGroupChanged(index);
+            }
+            return;
+        }
+
+        index = -index - 1;
+        groupKeys.add(index, dataSnapshot.getKey());
+        groups.add(index, group);
+        if (onGroupsChangedListener != null) {
+            onGroupsChangedListener.onGroupsInserted(index, 1);
+        }
+    }
+
+    /**
+     * one loaded page, which keeps its groups up to date
+     */
+    private class Page implements ChildEventListener {
+        final Query query;
+        final Set<String> keys = new HashSet<String>();
+
+        Page(Query query) {
+            this.query = query;
+        }
+
+        /**
+         * starts listening to the page's query
+         */
+        void listen() {
+            query.addChildEventListener(this);
+        }
+
+        /**
+         * stops listening to the page's query
+         */
+        void remove() {
+            query.removeEventListener(this);
+        }
+
+        /**
+         * Overrides the onChildAdded method to add a group of the page, pages overlap at their
+         * cursors and a deletion pulls the next page's first group in, so it may be loaded already
+         * @param dataSnapshot the group
+         * @param previousChildName unused
+         */
+        @Override
+        public void onChildAdded(@NonNull DataSnapshot dataSnapshot, @Nullable String previousChildName) {
+            keys.add(dataSnapshot.getKey());
+            putGroup(dataSnapshot);
+        }
+
+        /**
+         * Overrides the onChildChanged method to update the group in place
+         * @param dataSnapshot the group
+         * @param previousChildName unused
+         */
+        @Override
+        public void onChildChanged(@NonNull DataSnapshot dataSnapshot, @Nullable String previousChildName) {
+            putGroup(dataSnapshot);
+        }
+
+        /**
+         * Overrides the onChildRemoved method to drop a deleted group, unless another page still has it
+         * @param dataSnapshot the group
+         */
+        @Override
+        public void onChildRemoved(@NonNull DataSnapshot dataSnapshot) {
+            keys.remove(dataSnapshot.getKey());
+            if (!isInAnyPage(dataSnapshot.getKey())) {
+                removeGroup(dataSnapshot.getKey());
+            }
+        }
+
+        @Override
+        public void onChildMoved(@NonNull DataSnapshot dataSnapshot, @Nullable String previousChildName) {
+
+        }
+
+        @Override
+        public void onCancelled(@NonNull DatabaseError databaseError) {
+
+        }
+    }
+}
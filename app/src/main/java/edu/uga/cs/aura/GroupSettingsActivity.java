@@ -50,6 +50,8 @@ import com.squareup.picasso.Picasso;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * creates the GroupSettingsActivity
@@ -159,7 +161,13 @@ public class GroupSettingsActivity extends AppCompatActivity {
                     dialogInterface.dismiss();
                 }
                 else if(i == DialogInterface.BUTTON_NEGATIVE){
-                    dbCurrentGroupRef.removeValue();
+                    //remove the group's information, its messages and its tones together
+                    Map<String, Object> groupRemoval = new HashMap<>();
+                    groupRemoval.put("Groups/" + currentGroupKey, null);
+                    groupRemoval.put(GroupDirectory.getEntryPath(currentGroupKey), null);
+                    groupRemoval.put("GroupMessages/" + currentGroupKey, null);
+                    groupRemoval.put(AuraAggregator.getGroupHistoryPath(currentGroupKey), null);
+                    FirebaseDatabase.getInstance().getReference().updateChildren(groupRemoval);
                     groupSettingToMainActivityIntent();
                 }
             }
@@ -179,10 +187,12 @@ public class GroupSettingsActivity extends AppCompatActivity {
             editName.setError("Required.");
             return;
         }
-        dbCurrentGroupRef.child("groupName").setValue(groupName);
-
-        dbCurrentGroupRef.child("groupDescription").setValue(editDescription.getText().toString());
-        dbCurrentGroupRef.child("groupImage").setValue("DEFAULT");
+        //the group and its directory entry are written together
+        Map<String, Object> groupUpdates = new HashMap<>();
+        GroupDirectory.putField(groupUpdates, currentGroupKey, "groupName", groupName);
+        GroupDirectory.putField(groupUpdates, currentGroupKey, "groupDescription", editDescription.getText().toString());
+        GroupDirectory.putField(groupUpdates, currentGroupKey, "groupImage", "DEFAULT");
+        FirebaseDatabase.getInstance().getReference().updateChildren(groupUpdates);
 
         groupImageBitmap = ((BitmapDrawable)groupPic.getDrawable()).getBitmap();
         if(groupImageBitmap != ((BitmapDrawable)getResources().getDrawable(R.drawable.default_profile_image)).getBitmap()) {
@@ -208,7 +218,9 @@ public class GroupSettingsActivity extends AppCompatActivity {
                     if (task.isSuccessful()) {
                         Toast.makeText(GroupSettingsActivity.this, "Photo Upload Succeeded :)", Toast.LENGTH_SHORT).show();
                         Uri imgDownloadUri = task.getResult();
-                        dbCurrentGroupRef.child("groupImage").setValue(imgDownloadUri.toString());
+                        Map<String, Object> imageUpdate = new HashMap<>();
+                        GroupDirectory.putField(imageUpdate, currentGroupKey, "groupImage", imgDownloadUri.toString());
+                        FirebaseDatabase.getInstance().getReference().updateChildren(imageUpdate);
                     }
                 }
             });
@@ -8,8 +8,7 @@ package edu.uga.cs.aura;
 
 import android.content.Intent;
 import android.os.Bundle;
-import android.text.Editable;
-import android.text.TextWatcher;
+import android.text.TextUtils;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -23,23 +22,24 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.firebase.ui.database.FirebaseRecyclerAdapter;
-import com.firebase.ui.database.FirebaseRecyclerOptions;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.Query;
-import com.google.firebase.database.ValueEventListener;
 import com.mikhaellopez.circularimageview.CircularImageView;
 import com.squareup.picasso.Picasso;
 
+import java.util.ArrayList;
+import java.util.List;
+
 
 /**
  * Creates a group fragment
  */
 public class GroupsFrag extends Fragment {
 
+    public static final int MAX_SEARCH_RESULTS = 50;
+    public static final int PAGE_SIZE = 30;
+    public static final int PREFETCH_DISTANCE = 10;
+
     private View groupFragView;
     private EditText groupSearchBar;
     private RecyclerView groupRecyclerView;
@@ -48,9 +48,9 @@ public class GroupsFrag extends Fragment {
 
     private String currentUid;
 
-    private FirebaseRecyclerAdapter<Group, GroupsViewHolder> adapter;
-    private FirebaseRecyclerOptions<Group> options;
-    private Query groupNameQuery;
+    private GroupList groupList;
+    private GroupPager groupPager;
+    private int prefetchedThrough = -1;
 
 
     /**
@@ -76,34 +76,62 @@ public class GroupsFrag extends Fragment {
         // Inflate the layout for this fragment
         groupFragView = inflater.inflate(R.layout.groups_fragment, container, false);
 
-        groupSearchBar = groupFragView.findViewById(R.id.groupSearchBar);
-        groupSearchBar.addTextChangedListener(new TextWatcher() {
+        groupRecyclerView = groupFragView.findViewById(R.id.group_recycler_view);
+        groupRecyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
+        groupRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            /**
+             * Overrides the onScrolled method to prefetch the next page and the images of the next groups
+             * @param recyclerView that was scrolled
+             * @param dx
+             * @param dy
+             */
             @Override
-            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (groupList.getCurrentSearch().isEmpty()) {
+                    LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+                    groupPager.onScrolledTo(layoutManager.findFirstVisibleItemPosition(), layoutManager.findLastVisibleItemPosition());
+                }
+                prefetchNextGroups();
             }
+        });
+
+        dbGroupRef = FirebaseDatabase.getInstance().getReference().child("Groups");
 
+        //Setting up the list, its adapter is reused for every page and search
+        groupList = new GroupList(groupRecyclerView);
+        groupPager = new GroupPager(dbGroupRef, PAGE_SIZE, PREFETCH_DISTANCE);
+        groupPager.setOnGroupsChangedListener(new GroupPager.OnGroupsChangedListener() {
             @Override
-            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            public void onGroupsInserted(int position, int count) {
+                //a page read again above the groups shifts the ones already prefetched down
+                if (position <= prefetchedThrough) {
+                    prefetchedThrough += count;
+                }
+                groupList.notifyItemsInserted(groupPager.getGroups(), position, count);
             }
 
-            /**
-             * Overrides the afterTextChanged method to search for the group by groupName
-             * @param s the name of the group
-             */
             @Override
-            public void afterTextChanged(Editable s) {
-                if (!s.toString().isEmpty()){
-                    searchForGroup(s.toString());
-                }
-                else {
-                    searchForGroup("");
+            public void onGroupChanged(int position) {
+                groupList.notifyItemChanged(groupPager.getGroups(), position);
+            }
+
+            @Override
+            public void onGroupRemoved(int position) {
+                if (position <= prefetchedThrough) {
+                    prefetchedThrough--;
                 }
+                groupList.notifyItemRemoved(groupPager.getGroups(), position);
+            }
+
+            @Override
+            public void onGroupsCleared() {
+                prefetchedThrough = -1;
+                groupList.notifyItemsChanged(groupPager.getGroups());
             }
         });
-        groupRecyclerView = groupFragView.findViewById(R.id.group_recycler_view);
-        groupRecyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
 
-        dbGroupRef = FirebaseDatabase.getInstance().getReference().child("Groups");
+        groupSearchBar = groupFragView.findViewById(R.id.groupSearchBar);
+        groupList.attachSearchBar(groupSearchBar);
 
 
         return groupFragView;
@@ -115,91 +143,22 @@ public class GroupsFrag extends Fragment {
     @Override
     public void onStart() {
         super.onStart();
-        options = new FirebaseRecyclerOptions.Builder<Group>()
-                        .setQuery(dbGroupRef, Group.class)
-                        .build();
+        groupList.start();
+        groupPager.start();
 
-        adapter = new FirebaseRecyclerAdapter<Group, GroupsViewHolder>(options) {
-            /**
-             * Overrides the onCreateViewHolder to display each group
-             * @param parent that the views are being put into
-             * @param viewType
-             * @return GroupsViewHolder
-             */
-            @NonNull
-            @Override
-            public GroupsViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-                View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.group_display, parent, false);
-                return new GroupsViewHolder(view);
-            }
-
-            /**
-             * Overrides the onBindViewHolder to bind the views
-             * @param holder of the group information
-             * @param position of the group being added
-             * @param model Group that is being added
-             */
-            @Override
-            protected void onBindViewHolder(@NonNull final GroupsViewHolder holder, final int position, @NonNull Group model) {
-                final String groupIDs = getRef(position).getKey();
-                dbGroupRef.child(groupIDs).addValueEventListener(new ValueEventListener() {
-                    /**
-                     * Overrides the onDataChange to add the groups to the fragment
-                     * @param dataSnapshot to be watched from the database
-                     */
-                    @Override
-                    public void onDataChange(@NonNull final DataSnapshot dataSnapshot) {
-                        //if exists
-                        if (dataSnapshot.exists()) {
-                            //get groupKey and groupName and groupDescription
-                            final String groupKey = getRef(position).getKey();
-                            final String groupName = dataSnapshot.child("groupName").getValue(String.class);
-                            final String groupDescription = dataSnapshot.child("groupDescription").getValue(String.class);
-                            final String groupImageUrl = dataSnapshot.child("groupImage").getValue(String.class);
-                            holder.groupName.setText(groupName);
-                            holder.groupDescription.setText(groupDescription);
-                            holder.groupImage.setBorderColor(dataSnapshot.child("groupAura").getValue(Integer.class));
-                            if (groupImageUrl == "DEFAULT"){
-                                holder.groupImage.setImageResource(R.drawable.default_profile_image);
-                            }
-                            else {
-                                Picasso.get().load(groupImageUrl).placeholder(R.drawable.default_profile_image).into(holder.groupImage);
-                            }
-
-                            holder.itemView.setOnClickListener(new View.OnClickListener() {
-                                @Override
-                                public void onClick(View v) {
-                                    Intent groupMessageIntent = new Intent(getContext(), GroupMessageActivity.class);
-                                    groupMessageIntent.putExtra("groupKey" , groupKey);
-                                    startActivity(groupMessageIntent);
-                                }
-                            });
-
-                            holder.itemView.setOnLongClickListener(new View.OnLongClickListener() {
-                                @Override
-                                public boolean onLongClick(View v) {
-                                    if (currentUid == dataSnapshot.child("groupOwner").getValue(String.class)){
-                                        Intent groupSettingsIntent = new Intent(getContext(), GroupSettingsActivity.class);
-                                        groupSettingsIntent.putExtra("groupKey", groupKey);
-                                        startActivity(groupSettingsIntent);
-                                    }
-                                    return false;
-                                }
-                            });
-
-                        }
-                    }
-
-                    @Override
-                    public void onCancelled(@NonNull DatabaseError databaseError) {
-
-                    }
-                });
-            }
-        };
+        GroupDirectory.getInstance().addListener(directoryListener);
+        searchForGroup(groupList.getCurrentSearch());
+    }
 
-        groupRecyclerView.setAdapter(adapter);
-        adapter.startListening();
+    /**
+     * Overrides the onStop method to stop listening to the groups and the search results
+     */
+    @Override
+    public void onStop() {
+        super.onStop();
+        groupList.stop();
+        groupPager.stop();
+        GroupDirectory.getInstance().removeListener(directoryListener);
     }
 
 
@@ -221,99 +180,143 @@ public class GroupsFrag extends Fragment {
     }
 
     /**
-     * searches for the group in the database
-     * @param groupName name of the group in the database
+     * Loads the images of the PREFETCH_DISTANCE groups below the last visible one, each group once,
+     * so they are cached by the time their rows are bound
+     */
+    private void prefetchNextGroups() {
+        int lastVisible = ((LinearLayoutManager) groupRecyclerView.getLayoutManager()).findLastVisibleItemPosition();
+        if (lastVisible == RecyclerView.NO_POSITION) {
+            return;
+        }
+
+        int prefetchEnd = Math.min(lastVisible + PREFETCH_DISTANCE, groupList.getItemCount() - 1);
+        for (int position = Math.max(lastVisible + 1, prefetchedThrough + 1); position <= prefetchEnd; position++) {
+            String groupImageUrl = groupList.getItem(position).getGroupImage();
+            if (!TextUtils.isEmpty(groupImageUrl) && !groupImageUrl.equals("DEFAULT")) {
+                Picasso.get().load(groupImageUrl).fetch();
+            }
+        }
+        prefetchedThrough = Math.max(prefetchedThrough, prefetchEnd);
+    }
+
+    /**
+     * Searches for the group in the on-device directory, no query is sent per keystroke
+     * @param groupName name or description of the group
      */
     public void searchForGroup(final String groupName){
         Log.d("Searched For:", groupName);
 
-        if (groupName != "") {
-            //search for user query
-            groupNameQuery = dbGroupRef.orderByChild("groupName").startAt(groupName)
-                    .endAt(groupName+"\uf8ff");
+        //the positions now belong to other groups
+        prefetchedThrough = -1;
 
-            //Setting up firebase adapter
-            options = new FirebaseRecyclerOptions.Builder<Group>()
-                    .setQuery(groupNameQuery, Group.class)
-                    .build();
+        if (groupName.isEmpty()) {
+            groupList.showItems(groupPager.getGroupKeys(), groupPager.getGroups());
+            return;
+        }
+
+        //the directory is only downloaded once the user searches
+        GroupDirectory.getInstance().start();
+
+        List<String> groupKeys = new ArrayList<String>();
+        List<Group> groups = new ArrayList<Group>();
+        for (GroupDirectory.Entry entry : GroupDirectory.getInstance().search(groupName, MAX_SEARCH_RESULTS)) {
+            groupKeys.add(entry.getGroupKey());
+            groups.add(entry.getGroup());
+        }
+        groupList.showItems(groupKeys, groups);
+    }
+
+    /**
+     * Runs the search again when a group is added, changed or removed
+     */
+    private final GroupDirectory.OnDirectoryChangedListener directoryListener = new GroupDirectory.OnDirectoryChangedListener() {
+        @Override
+        public void onDirectoryChanged() {
+            if (!groupList.getCurrentSearch().isEmpty()) {
+                searchForGroup(groupList.getCurrentSearch());
+            }
+        }
+    };
+
+    /**
+     * Binds a group's information and clicks to a row
+     * @param holder of the row
+     * @param groupKey of the group
+     * @param group the group's information
+     */
+    private void bindGroup(@NonNull GroupsViewHolder holder, final String groupKey, final Group group) {
+        final String groupImageUrl = group.getGroupImage();
+        holder.groupName.setText(group.getGroupName());
+        holder.groupDescription.setText(group.getGroupDescription());
+        holder.groupImage.setBorderColor(group.getGroupAura());
+        if (TextUtils.isEmpty(groupImageUrl) || groupImageUrl.equals("DEFAULT")) {
+            holder.groupImage.setImageResource(R.drawable.default_profile_image);
         }
         else {
-            //Setting up firebase adapter
-            options = new FirebaseRecyclerOptions.Builder<Group>()
-                    .setQuery(dbGroupRef, Group.class)
-                    .build();
+            Picasso.get().load(groupImageUrl).placeholder(R.drawable.default_profile_image).into(holder.groupImage);
         }
 
-        adapter = new FirebaseRecyclerAdapter<Group, GroupsViewHolder>(options) {
-            /**
-             * Overrides the onCreateViewHolder to display each group
-             * @param parent that the views are being put into
-             * @param viewType
-             * @return GroupsViewHolder
-             */
-            @NonNull
+        holder.itemView.setOnClickListener(new View.OnClickListener() {
             @Override
-            public GroupsViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-                View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.group_display, parent, false);
-                return new GroupsViewHolder(view);
+            public void onClick(View v) {
+                Intent groupMessageIntent = new Intent(getContext(), GroupMessageActivity.class);
+                groupMessageIntent.putExtra("groupKey" , groupKey);
+                startActivity(groupMessageIntent);
             }
+        });
 
-            /**
-             * overrides the onBindViewHolder method to bind the views
-             * @param holder the ContactViewHolder that holds the information about the card
-             * @param position the position of the contact that will is being added
-             * @param model the user for the contact
-             */
+        holder.itemView.setOnLongClickListener(new View.OnLongClickListener() {
             @Override
-            protected void onBindViewHolder(@NonNull final GroupsViewHolder holder, final int position, @NonNull Group model) {
-                final String groupIDs = getRef(position).getKey();
-                dbGroupRef.child(groupIDs).addValueEventListener(new ValueEventListener() {
-                    /**
-                     * Overrides the onDataChange method to make sure that the information changes in the
-                     * display if it changes in the database
-                     * @param dataSnapshot that is being monitored for changes
-                     */
-                    @Override
-                    public void onDataChange(@NonNull final DataSnapshot dataSnapshot) {
-                        //if exists
-                        if (dataSnapshot.exists()) {
-                            //get groupName and groupDescription
-                            final String currentGroupKey = getRef(position).getKey();
-                            final String groupName = dataSnapshot.child("groupName").getValue(String.class);
-                            final String groupDescription = dataSnapshot.child("groupDescription").getValue(String.class);
-                            final String groupImageUrl = dataSnapshot.child("groupImage").getValue(String.class);
-                            holder.groupName.setText(groupName);
-                            holder.groupDescription.setText(groupDescription);
-                            holder.groupImage.setBorderColor(dataSnapshot.child("groupAura").getValue(Integer.class));
-                            if (groupImageUrl == "DEFAULT"){
-                                holder.groupImage.setImageResource(R.drawable.default_profile_image);
-                            }
-                            else {
-                                Picasso.get().load(groupImageUrl).placeholder(R.drawable.default_profile_image).into(holder.groupImage);
-                            }
-
-                            holder.itemView.setOnClickListener(new View.OnClickListener() {
-                                @Override
-                                public void onClick(View v) {
-                                    Intent groupMessageIntent = new Intent(getContext(), GroupMessageActivity.class);
-                                    groupMessageIntent.putExtra("groupKey" , currentGroupKey);
-                                    startActivity(groupMessageIntent);
-                                }
-                            });
-
-                        }
-                    }
-
-                    @Override
-                    public void onCancelled(@NonNull DatabaseError databaseError) {
-
-                    }
-                });
+            public boolean onLongClick(View v) {
+                if (currentUid.equals(group.getGroupOwner())){
+                    Intent groupSettingsIntent = new Intent(getContext(), GroupSettingsActivity.class);
+                    groupSettingsIntent.putExtra("groupKey", groupKey);
+                    startActivity(groupSettingsIntent);
+                }
+                return false;
             }
-        };
+        });
+    }
+
+    /**
+     * the list of the loaded pages of groups, or of the groups found by the search
+     */
+    private class GroupList extends SearchableList<Group, GroupsViewHolder> {
+
+        GroupList(RecyclerView recyclerView) {
+            super(recyclerView, 0);
+        }
+
+        /**
+         * Overrides the createViewHolder to display each group
+         * @param parent that the views are being put into
+         * @return GroupsViewHolder
+         */
+        @Override
+        protected GroupsViewHolder createViewHolder(@NonNull ViewGroup parent) {
+            View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.group_display, parent, false);
+            return new GroupsViewHolder(view);
+        }
+
+        /**
+         * Overrides the bindViewHolder to bind the views
+         * @param holder of the group information
+         * @param groupKey of the group being added
+         * @param model Group that is being added
+         */
+        @Override
+        protected void bindViewHolder(@NonNull GroupsViewHolder holder, String groupKey, @NonNull Group model) {
+            bindGroup(holder, groupKey, model);
+        }
 
-        groupRecyclerView.setAdapter(adapter);
-        adapter.startListening();
+        /**
+         * Overrides the onSearch method to search for the group by name or description
+         * @param search what the user typed
+         */
+        @Override
+        protected void onSearch(String search) {
+            searchForGroup(search);
+        }
     }
 
 }
@@ -0,0 +1,193 @@
+/**
+ * @author Jett Thistle
+ * @author Kirtana Nidamarti
+ */
+
+package edu.uga.cs.aura;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds tones on the device from a small word list, with no network.
+ *
+ * Each word, two word phrase and emoticon in the lexicon counts towards anger, joy or sadness.
+ * Emoticons are matched longest first and each match is blanked out, so ">:(" only counts as
+ * anger and not also as the ":(" inside it.
+ * Intensifiers ("so", "really") make the next word count more and negations ("not", "never")
+ * cancel it, with "not happy" counting towards sadness instead. The confidence is high when
+ * one tone clearly wins and low when nothing matched or the tones are close.
+ */
+public class LexiconToneClassifier implements ToneClassifier {
+
+    private static final double STRONG_WEIGHT = 2;
+    private static final double INTENSIFIER_WEIGHT = 1.5;
+    private static final double NEGATED_JOY_WEIGHT = .5;
+    private static final double MIN_TONE_SCORE = 1;
+    private static final int MAX_NEUTRAL_WORDS = 3;
+
+    private static final Map<String, Integer> WORDS = new HashMap<String, Integer>();
+    private static final Map<String, Integer> PHRASES = new HashMap<String, Integer>();
+    private static final Map<String, Integer> EMOTICONS = new HashMap<String, Integer>();
+    private static final List<String> EMOTICONS_LONGEST_FIRST;
+    private static final Set<String> STRONG_WORDS = new HashSet<String>(Arrays.asList(
+            "hate", "furious", "disgusting", "love", "amazing", "ecstatic", "devastated", "heartbroken", "miserable"));
+    private static final Set<String> NEGATIONS = new HashSet<String>(Arrays.asList(
+            "not", "no", "never", "dont", "didnt", "isnt", "wasnt", "aint", "cant", "wont", "nothing"));
+    private static final Set<String> INTENSIFIERS = new HashSet<String>(Arrays.asList(
+            "so", "very", "really", "super", "too", "extremely", "totally", "soo", "sooo"));
+
+    static {
+        addAll(WORDS, ToneAnalysisService.TONE_ANGER, "angry", "mad", "furious", "hate", "hated", "annoyed",
+                "annoying", "pissed", "rage", "disgusting", "gross", "stupid", "idiot", "awful", "terrible",
+                "worst", "ugh", "irritated", "frustrated", "frustrating", "outraged", "ridiculous", "disgusted");
+        addAll(WORDS, ToneAnalysisService.TONE_JOY, "happy", "glad", "great", "awesome", "amazing", "love",
+                "loved", "excited", "yay", "fun", "wonderful", "fantastic", "nice", "lol", "haha", "hahaha",
+                "lmao", "congrats", "congratulations", "thanks", "thank", "cool", "ecstatic", "perfect", "best",
+                "delighted", "proud", "enjoy", "enjoyed", "beautiful");
+        addAll(WORDS, ToneAnalysisService.TONE_SADNESS, "sad", "unhappy", "depressed", "lonely", "miss",
+                "crying", "cry", "cried", "sorry", "devastated", "heartbroken", "miserable", "hurt", "upset",
+                "scared", "afraid", "worried", "anxious", "nervous", "terrified", "fear", "tired", "disappointed",
+                "lost", "alone", "sigh");
+
+        addAll(PHRASES, ToneAnalysisService.TONE_ANGER, "fed up", "shut up", "screw you", "so done");
+        addAll(PHRASES, ToneAnalysisService.TONE_JOY, "well done", "good job", "so good", "cant wait", "love you");
+        addAll(PHRASES, ToneAnalysisService.TONE_SADNESS, "miss you", "feel bad", "let down", "so sorry", "feeling down");
+
+        addAll(EMOTICONS, ToneAnalysisService.TONE_ANGER, ">:(", ">:[", "😠", "😡", "🤬");
+        addAll(EMOTICONS, ToneAnalysisService.TONE_JOY, ":)", ":-)", ":D", ":-D", "<3", "😀", "😁", "😂", "😊", "😍", "❤", "🥳");
+        addAll(EMOTICONS, ToneAnalysisService.TONE_SADNESS, ":(", ":-(", ":'(", "😢", "😭", "😞", "😔", "💔");
+
+        EMOTICONS_LONGEST_FIRST = new ArrayList<String>(EMOTICONS.keySet());
+        Collections.sort(EMOTICONS_LONGEST_FIRST, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                return b.length() - a.length();
+            }
+        });
+    }
+
+    /**
+     * Adds entries with the same tone to a lexicon
+     * @param lexicon to add to
+     * @param tone of the entries
+     * @param entries the words, phrases or emoticons
+     */
+    private static void addAll(Map<String, Integer> lexicon, int tone, String... entries) {
+        for (String entry : entries) {
+            lexicon.put(entry, tone);
+        }
+    }
+
+    /**
+     * Finds the tone of the text from the lexicon
+     * @param text of the message
+     * @return the tone and how clearly it won
+     */
+    @Override
+    public Result classify(String text) {
+        double[] scores = new double[3];
+
+        //emoticons are matched before the text is split into words, which drops punctuation
+        StringBuilder unmatched = new StringBuilder(text);
+        for (String emoticon : EMOTICONS_LONGEST_FIRST) {
+            int index = unmatched.indexOf(emoticon);
+            if (index < 0) {
+                continue;
+            }
+            scores[EMOTICONS.get(emoticon)] += STRONG_WEIGHT;
+
+            //blank out every copy so a shorter emoticon inside it is not matched too
+            while (index >= 0) {
+                for (int i = index; i < index + emoticon.length(); i++) {
+                    unmatched.setCharAt(i, ' ');
+                }
+                index = unmatched.indexOf(emoticon, index + emoticon.length());
+            }
+        }
+
+        String[] words = text.toLowerCase().replace("'", "").split("[^a-z]+");
+        int wordCount = 0;
+        boolean negated = false;
+        double intensity = 1;
+        String previousWord = null;
+
+        for (String word : words) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            wordCount++;
+
+            Integer tone = previousWord == null ? null : PHRASES.get(previousWord + " " + word);
+            double weight = STRONG_WEIGHT;
+            if (tone == null) {
+                tone = WORDS.get(word);
+                weight = STRONG_WORDS.contains(word) ? STRONG_WEIGHT : 1;
+            }
+
+            if (tone != null) {
+                weight *= intensity;
+                if (!negated) {
+                    scores[tone] += weight;
+                }
+                else if (tone == ToneAnalysisService.TONE_JOY) {
+                    scores[ToneAnalysisService.TONE_SADNESS] += weight * NEGATED_JOY_WEIGHT;
+                }
+                negated = false;
+                intensity = 1;
+            }
+            else if (NEGATIONS.contains(word)) {
+                negated = true;
+            }
+            else if (INTENSIFIERS.contains(word)) {
+                intensity = INTENSIFIER_WEIGHT;
+            }
+
+            previousWord = word;
+        }
+
+        //exclamation marks make whatever tone there is stronger
+        int exclamations = 0;
+        for (int i = 0; i < text.length() && exclamations < 3; i++) {
+            if (text.charAt(i) == '!') {
+                exclamations++;
+            }
+        }
+
+        int best = ToneAnalysisService.TONE_NONE;
+        double bestScore = 0, secondScore = 0, total = 0;
+        for (int tone = 0; tone < scores.length; tone++) {
+            total += scores[tone];
+            if (scores[tone] > bestScore) {
+                secondScore = bestScore;
+                bestScore = scores[tone];
+                best = tone;
+            }
+            else if (scores[tone] > secondScore) {
+                secondScore = scores[tone];
+            }
+        }
+
+        if (total == 0) {
+            //short messages with no feeling words ("ok", "see you at 5") are safely neutral
+            return new Result(ToneAnalysisService.TONE_NONE, wordCount <= MAX_NEUTRAL_WORDS ? .8 : .2);
+        }
+
+        bestScore *= 1 + .25 * exclamations;
+        if (bestScore < MIN_TONE_SCORE) {
+            return new Result(ToneAnalysisService.TONE_NONE, .3);
+        }
+
+        //sure when the score is high and the other tones are far behind
+        double strength = 1 - Math.exp(-bestScore);
+        double margin = (bestScore - secondScore) / bestScore;
+        return new Result(best, strength * margin);
+    }
+}
@@ -124,6 +124,11 @@ public class MainActivity extends AppCompatActivity {
         if (!hasAsserted) {
             assertUserExists();
         }
+
+        Outbox.getInstance().start(this);
+        AuraAggregator.getInstance().recomputeUserIfStale(this, currentUid);
+        UserSearchIndex.indexOnce(this, currentUid);
+        GroupMessageMigration.migrateAllOnce(this);
     }
 
     /**
@@ -279,14 +284,15 @@ public class MainActivity extends AppCompatActivity {
                 else {
                     //add the newly created group to the db
                     final String groupID = dbGroupsRef.push().getKey();
+                    //the group and its directory entry are written together
                     HashMap<String, Object> groupData = new HashMap<>();
-                    groupData.put("groupName", groupName);
-                    groupData.put("groupDescription", groupDescription);
-                    groupData.put("groupAura", Color.GRAY);
-                    groupData.put("groupOwner", currentUid);
+                    GroupDirectory.putField(groupData, groupID, "groupName", groupName);
+                    GroupDirectory.putField(groupData, groupID, "groupDescription", groupDescription);
+                    GroupDirectory.putField(groupData, groupID, "groupAura", Color.GRAY);
+                    groupData.put("Groups/" + groupID + "/groupOwner", currentUid);
 
                     if(groupPhotoBitmap == ((BitmapDrawable)getResources().getDrawable(R.drawable.default_profile_image)).getBitmap()) {
-                        groupData.put("groupImage", "DEFAULT");
+                        GroupDirectory.putField(groupData, groupID, "groupImage", "DEFAULT");
                     }
                     else {
                         final StorageReference storageCurrentGroupRef = storageGroupImagesRef.child(groupID);
@@ -311,13 +317,15 @@ public class MainActivity extends AppCompatActivity {
                                 if (task.isSuccessful()) {
                                     Toast.makeText(MainActivity.this, "Photo Upload Succeeded :)", Toast.LENGTH_SHORT).show();
                                     Uri imgDownloadUri = task.getResult();
-                                    dbGroupsRef.child(groupID).child("groupImage").setValue(imgDownloadUri.toString());
+                                    HashMap<String, Object> imageUpdate = new HashMap<>();
+                                    GroupDirectory.putField(imageUpdate, groupID, "groupImage", imgDownloadUri.toString());
+                                    dbRootRef.updateChildren(imageUpdate);
                                 }
                             }
                         });
                     }
 
-                    dbGroupsRef.child(groupID).setValue(groupData).addOnCompleteListener(new OnCompleteListener<Void>() {
+                    dbRootRef.updateChildren(groupData).addOnCompleteListener(new OnCompleteListener<Void>() {
                         @Override
                         public void onComplete(@NonNull Task<Void> task) {
                             if (task.isSuccessful()) {
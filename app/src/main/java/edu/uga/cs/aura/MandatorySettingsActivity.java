@@ -39,6 +39,7 @@ import com.google.firebase.storage.UploadTask;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Collections;
 
 /**
  * creates the MandatorySettingsActivity
@@ -106,6 +107,7 @@ public class MandatorySettingsActivity extends AppCompatActivity {
 
         User userObj = new User(uid, displayName, Color.LTGRAY, "DEFAULT");
         dbCurrentUserRef.setValue(userObj);
+        UserSearchIndex.update(uid, displayName);
 
         if(profilePhotoBitmap != ((BitmapDrawable)getResources().getDrawable(R.drawable.default_profile_image)).getBitmap()) {
             final StorageReference storageCurrentUserRef = storageUserImagesRef.child(uid);
@@ -130,7 +132,8 @@ public class MandatorySettingsActivity extends AppCompatActivity {
                     if (task.isSuccessful()) {
                         Toast.makeText(MandatorySettingsActivity.this, "Photo Upload Succeeded :)", Toast.LENGTH_SHORT).show();
                         Uri imgDownloadUri = task.getResult();
-                        dbCurrentUserRef.child("imageUrl").setValue(imgDownloadUri.toString());
+                        ContactSummaries.publish(fbUser.getUid(),
+                                Collections.<String, Object>singletonMap("imageUrl", imgDownloadUri.toString()));
                     }
                 }
             });
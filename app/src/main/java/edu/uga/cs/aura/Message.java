@@ -11,6 +11,7 @@ package edu.uga.cs.aura;
 public class Message {
     private String fromID, fromName, toID, messageID, message;
     private int tone;
+    private boolean tonePending;
 
     /**
      * Empty constructor
@@ -131,4 +132,20 @@ public class Message {
     public void setTone(int tone) {
         this.tone = tone;
     }
-}
\ No newline at end of file
+
+    /**
+     * gets whether the tone of the message is still being analyzed
+     * @return true until the tone has been added
+     */
+    public boolean isTonePending() {
+        return tonePending;
+    }
+
+    /**
+     * sets whether the tone of the message is still being analyzed
+     * @param tonePending true until the tone has been added
+     */
+    public void setTonePending(boolean tonePending) {
+        this.tonePending = tonePending;
+    }
+}
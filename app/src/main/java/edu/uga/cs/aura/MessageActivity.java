@@ -7,7 +7,6 @@ package edu.uga.cs.aura;
 
 import android.app.Activity;
 import android.graphics.Color;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.text.TextUtils;
 import android.view.Menu;
@@ -26,25 +25,16 @@ import androidx.appcompat.widget.Toolbar;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.google.android.gms.tasks.OnCompleteListener;
-import com.google.android.gms.tasks.Task;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.ChildEventListener;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
 import com.google.firebase.database.ValueEventListener;
-import com.ibm.cloud.sdk.core.security.IamAuthenticator;
-import com.ibm.watson.tone_analyzer.v3.ToneAnalyzer;
-import com.ibm.watson.tone_analyzer.v3.model.ToneAnalysis;
-import com.ibm.watson.tone_analyzer.v3.model.ToneOptions;
-import com.ibm.watson.tone_analyzer.v3.model.ToneScore;
 import com.mikhaellopez.circularimageview.CircularImageView;
 import com.squareup.picasso.Picasso;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -63,7 +53,7 @@ public class MessageActivity extends AppCompatActivity {
     private TextView receiverDisplayName;
 
     private FirebaseAuth auth;
-    private DatabaseReference dbRootRef, dbAuraRef;
+    private DatabaseReference dbRootRef;
 
     private ImageButton sendMessageButton;
     private EditText messageInputEditText;
@@ -72,6 +62,8 @@ public class MessageActivity extends AppCompatActivity {
     private LinearLayoutManager linearLayoutManager;
     private MessageAdapter messageAdapter;
     private RecyclerView userMessagesRecyclerView;
+    private MessagePager messagePager;
+    private boolean chatVisible;
 
     /**
      * Overrides the onCreate method to set up the messages in the chat
@@ -86,12 +78,14 @@ public class MessageActivity extends AppCompatActivity {
         auth = FirebaseAuth.getInstance();
         messageSenderID = auth.getCurrentUser().getUid();
         dbRootRef = FirebaseDatabase.getInstance().getReference();
-        dbAuraRef = dbRootRef.child("Users").child(messageSenderID).child("aura");
         messageReceiverID = getIntent().getStringExtra("otherUserID");
         messageReceiverName = getIntent().getStringExtra("otherUserDisplayName");
         messageReceiverImageUrl = getIntent().getStringExtra("otherUserImageUrl");
         messageReceiverAura = getIntent().getIntExtra("otherUserAura", -1);
 
+        ToneCache.getInstance().load(getApplicationContext());
+        Outbox.getInstance().start(this);
+
 
         fromUserDisplayToolbar = findViewById(R.id.fromUserDisplayToolbar);
         setSupportActionBar(fromUserDisplayToolbar);
@@ -115,6 +109,21 @@ public class MessageActivity extends AppCompatActivity {
         linearLayoutManager = new LinearLayoutManager(this);
         userMessagesRecyclerView.setLayoutManager(linearLayoutManager);
         userMessagesRecyclerView.setAdapter(messageAdapter);
+        messagePager = new MessagePager(dbRootRef.child("Messages").child(messageSenderID).child(messageReceiverID),
+                messagesList, messageAdapter, userMessagesRecyclerView);
+        messagePager.setOnNewestMessageListener(new MessagePager.OnNewestMessageListener() {
+            /**
+             * Overrides the onNewestMessage method to move the read cursor to a message the user can see
+             * @param messageID push ID of the message
+             * @param isNewest if it is the newest message of the chat
+             */
+            @Override
+            public void onNewestMessage(String messageID, boolean isNewest) {
+                if (chatVisible) {
+                    ConversationIndex.markRead(messageSenderID, messageReceiverID, messageID, isNewest);
+                }
+            }
+        });
 
 
         sendMessageButton.setOnClickListener(new View.OnClickListener() {
@@ -134,6 +143,8 @@ public class MessageActivity extends AppCompatActivity {
     protected void onStart() {
         super.onStart();
 
+        ToneAnalysisService.getInstance().warmUp();
+
         receiverDisplayName.setText(messageReceiverName);
 
         if (messageReceiverAura == -1) {
@@ -149,51 +160,67 @@ public class MessageActivity extends AppCompatActivity {
             Picasso.get().load(messageReceiverImageUrl).placeholder(R.drawable.default_profile_image).into(receiverProfileImage);
         }
 
-        dbRootRef.child("Messages").child(messageSenderID).child(messageReceiverID)
-                .addChildEventListener(new ChildEventListener() {
+        chatVisible = true;
+        dbRootRef.child(ConversationIndex.getPath(messageSenderID, messageReceiverID))
+                .addListenerForSingleValueEvent(new ValueEventListener() {
                     /**
-                     * Overrides the onChildAdded method to add the messages to the display and scroll down
-                     * @param dataSnapshot from the database
-                     * @param s the string of the message
+                     * Overrides the onDataChange method to start the chat from the last read message
+                     * if the unread messages do not fit on the newest page
+                     * @param dataSnapshot the index entry of the chat
                      */
                     @Override
-                    public void onChildAdded(DataSnapshot dataSnapshot, String s)
-                    {
-                        Message message = dataSnapshot.getValue(Message.class);
-
-                        messagesList.add(message);
-
-                        messageAdapter.notifyDataSetChanged();
+                    public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                        if (!chatVisible) {
+                            return;
+                        }
 
-                        userMessagesRecyclerView.smoothScrollToPosition(View.FOCUS_DOWN);
+                        Conversation conversation = dataSnapshot.getValue(Conversation.class);
+                        if (conversation != null && conversation.getUnreadCount() >= MessagePager.PAGE_SIZE) {
+                            messagePager.start(conversation.getLastReadMessageID(), conversation.getLastMessageID());
+                        }
+                        else {
+                            messagePager.start();
+                        }
                     }
 
-                    /**
-                     * Overrides the onChildChanged method to display the message
-                     * @param dataSnapshot from the database
-                     * @param s the string of the message
-                     */
                     @Override
-                    public void onChildChanged(DataSnapshot dataSnapshot, String s) {
-
+                    public void onCancelled(@NonNull DatabaseError databaseError) {
+                        if (chatVisible) {
+                            messagePager.start();
+                        }
                     }
+                });
+    }
 
-                    @Override
-                    public void onChildRemoved(DataSnapshot dataSnapshot) {
+    /**
+     * Overrides the onStop method to stop listening for messages
+     */
+    @Override
+    protected void onStop() {
+        super.onStop();
 
-                    }
+        ToneAnalysisService.getInstance().coolDown();
 
-                    @Override
-                    public void onChildMoved(DataSnapshot dataSnapshot, String s) {
+        chatVisible = false;
 
-                    }
+        //everything that was loaded has been seen, the cursor was moved as messages came in and this is the last move
+        String newestLoadedKey = messagePager.getNewestLoadedKey();
+        if (newestLoadedKey != null) {
+            ConversationIndex.markRead(messageSenderID, messageReceiverID, newestLoadedKey, messagePager.isAtNewest());
+        }
 
-                    @Override
-                    public void onCancelled(DatabaseError databaseError) {
+        messagePager.stop();
+        ToneCache.getInstance().save();
+    }
 
-                    }
-                });
+    /**
+     * Overrides the onDestroy method to stop waiting on the tone API for this chat's messages
+     */
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
 
+        ToneWorkQueue.getInstance().cancelAll(this);
     }
 
     /**
@@ -244,7 +271,8 @@ public class MessageActivity extends AppCompatActivity {
     }
 
     /**
-     * allows the user to send a message and analyze the tone
+     * allows the user to send a message. The message is written right away with a pending tone,
+     * and its tone is added once it has been analyzed
      */
     private void SendMessage()
     {
@@ -258,206 +286,98 @@ public class MessageActivity extends AppCompatActivity {
         }
         else
         {
-            new AnalyzeToneTask(messageText).execute();
-        }
-    }
-
-
-    /**
-     * creates the AnalyzeToneTask to analyze the tone of texts
-     */
-    private class AnalyzeToneTask extends AsyncTask<String,Integer,Integer>{
-
-        private final String API_KEY = "REPLACE_WITH_API"; //I removed our api key for safety
-        private final String URL = "https://gateway-wdc.watsonplatform.net/tone-analyzer/api";
-        private final String VERSION = "2017-09-21";
-        private IamAuthenticator authenticator;
-        private ToneAnalyzer toneAnalyzer;
-        private ToneOptions toneOptions;
-        private ToneAnalysis toneAnalysis;
-        private String text;
-
-        /**
-         * Constructor analyze the tone
-         * @param messageText the tone is analyzed for this string
-         */
-        public AnalyzeToneTask(String messageText){
-            authenticator  = new IamAuthenticator(API_KEY);
-            toneAnalyzer = new ToneAnalyzer(VERSION, authenticator);
-            toneAnalyzer.setServiceUrl(URL);
-            text = messageText;
-        }
-
-        /**
-         * Sends the text to the tone analyzing API
-         * @param strings of the message
-         * @return Integer of the tone result from the API
-         */
-        @Override
-        protected Integer doInBackground(String... strings) {
-            return sendTextToToneAPI(text);
-        }
-
-        /**
-         * Overrides the onPostExecute to add the tone and other information to the database
-         * @param toneResult result from the API
-         */
-        @Override
-        protected void onPostExecute(Integer toneResult) {
-
-            String messageSenderRef = "Messages/" + messageSenderID + "/" + messageReceiverID;
-            String messageReceiverRef = "Messages/" + messageReceiverID + "/" + messageSenderID;
-
             DatabaseReference userMessageKeyRef = dbRootRef.child("Messages")
                     .child(messageSenderID).child(messageReceiverID).push();
 
             String messagePushID = userMessageKeyRef.getKey();
 
             Map messageTextBody = new HashMap();
-            messageTextBody.put("message", text);
+            messageTextBody.put("message", messageText);
             messageTextBody.put("type", "text");
             messageTextBody.put("fromID", messageSenderID);
             messageTextBody.put("toID", messageReceiverID);
             messageTextBody.put("messageID", messagePushID);
-            messageTextBody.put("tone", toneResult);
-
-            updateUserAura(toneResult);
+            messageTextBody.put("tone", ToneAnalysisService.TONE_NONE);
+            messageTextBody.put("tonePending", true);
 
             Map messageBodyDetails = new HashMap();
-            messageBodyDetails.put(messageSenderRef + "/" + messagePushID, messageTextBody);
-            messageBodyDetails.put( messageReceiverRef + "/" + messagePushID, messageTextBody);
+            messageBodyDetails.put(getMessageSenderRef() + "/" + messagePushID, messageTextBody);
+            messageBodyDetails.put(getMessageReceiverRef() + "/" + messagePushID, messageTextBody);
 
-            dbRootRef.updateChildren(messageBodyDetails).addOnCompleteListener(new OnCompleteListener() {
+            //saved to disk before it is sent, so the typed text survives a bad network
+            String messageWriteID = Outbox.getInstance().enqueue(messageBodyDetails, new Outbox.OnSentListener() {
                 @Override
-                public void onComplete(@NonNull Task task)
+                public void onSent()
                 {
-                    if (task.isSuccessful())
+                    if (!isDestroyed())
                     {
                         Toast.makeText(MessageActivity.this, "Message Sent", Toast.LENGTH_LONG).show();
                     }
-                    else
-                    {
-                        Toast.makeText(MessageActivity.this, "Error", Toast.LENGTH_SHORT).show();
-                    }
-                    messageInputEditText.setText("");
                 }
             });
 
-        }
-
-        /**
-         * Sends the text to the API to be analyzed
-         * @param text to be analyzed
-         * @return int the color to be displayed for each text from the TONE_COLORS array
-         */
-        private int sendTextToToneAPI(String text){
-
-            toneOptions = new ToneOptions.Builder()
-                    .tones(Arrays.asList(ToneOptions.Tone.EMOTION))
-                    .sentences(false)
-                    .text(text)
-                    .build();
-
-            toneAnalysis = toneAnalyzer.tone(toneOptions).execute().getResult();
-            List<ToneScore> toneScores = toneAnalysis.getDocumentTone().getTones();
-
-            //if there is no tone found, just return default value (5)
-            if (toneScores == null || toneScores.isEmpty() || toneScores.get(0).getScore() < .7){
-                return 3;
-            }
-
-            String toneResult = toneAnalysis.getDocumentTone().getTones().get(0).getToneId();
-
-            int toneInt;
-            switch(toneResult){
-                case "anger":
-                case "disgust":
-                    toneInt = 0; //r
-                    break;
-
-                case "joy":
-                    toneInt = 1; //g
-                    break;
-
-                case "sadness":
-                case "fear":
-                    toneInt = 2; //b
-                    break;
-
-                default:
-                    toneInt = 3;
-                    break;
-            }
-
-            return toneInt;
+            String previewWriteID = ConversationIndex.putMessage(messageWriteID, messageSenderID, messageReceiverID,
+                    messagePushID, messageText, null);
 
+            analyzeTone(messageText, messagePushID, messageWriteID, previewWriteID);
         }
     }
 
     /**
-     * updates the user's aura
-     * @param toneResult the tone of the user
+     * gets the path of the sender's copy of the conversation
+     * @return the path
      */
-    private void updateUserAura(final int toneResult) {
-        //if tone not found or not strong enough
-        if (toneResult == 3){
-            return;
-        }
+    private String getMessageSenderRef()
+    {
+        return "Messages/" + messageSenderID + "/" + messageReceiverID;
+    }
 
-        dbAuraRef.addListenerForSingleValueEvent(new ValueEventListener() {
+    /**
+     * gets the path of the receiver's copy of the conversation
+     * @return the path
+     */
+    private String getMessageReceiverRef()
+    {
+        return "Messages/" + messageReceiverID + "/" + messageSenderID;
+    }
+
+
+    /**
+     * Finds the tone of a message that was already sent and adds it to both copies of the message
+     * and to the inbox entries
+     * @param messageText the tone is analyzed for this string
+     * @param messagePushID the ID of the sent message to add the tone to
+     * @param messageWriteID the Outbox ID of the message's write, the tone is written after it
+     * @param previewWriteID the Outbox ID of the inbox entries' write, the tone's entries are written after it
+     */
+    private void analyzeTone(final String messageText, final String messagePushID, final String messageWriteID,
+                             final String previewWriteID) {
+        ToneWorkQueue.getInstance().submit(this, messageText, new ToneWorkQueue.OnToneListener() {
             /**
-             * Overrides the onDataChange to update the user's aura if it is changed in the database
-             * @param dataSnapshot to be watched from the database
+             * Overrides the onTone method to add the tone to both copies of the message
+             * @param toneResult the tone of the message
              */
             @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                if (dataSnapshot.exists()){
-                    int userAura = dataSnapshot.getValue(Integer.class).intValue();
-                    int [] userAuraRGB = {Color.red(userAura), Color.green(userAura), Color.blue(userAura)};
-
-                    /*
-                     * Compare r, g, and b value for overall user aura and the tone of current message
-                     * shifts user aura 30 units towards (r/g/b) value of current message
-                     * If user aura capped, shift less aggressively
-                     */
+            public void onTone(int toneResult) {
 
-                    for(int i = 0; i < userAuraRGB.length; i++){
-                        //if not the color of tone found, then its 0 - val, if it is the color, 255 - val
-                        int difference = i == toneResult ? 255 - userAuraRGB[i] : 0 - userAuraRGB[i];
+                Map toneDetails = new HashMap();
+                toneDetails.put(getMessageSenderRef() + "/" + messagePushID + "/tone", toneResult);
+                toneDetails.put(getMessageSenderRef() + "/" + messagePushID + "/tonePending", null);
+                toneDetails.put(getMessageReceiverRef() + "/" + messagePushID + "/tone", toneResult);
+                toneDetails.put(getMessageReceiverRef() + "/" + messagePushID + "/tonePending", null);
 
-                        if (userAuraRGB[i] == 255){
-                            if (difference != 0){
-                                userAuraRGB[i]-=60;
-                            }
-                        }
-                        else if (userAuraRGB[i] == 0){
-                            if (difference != 0){
-                                userAuraRGB[i]+=60;
-                            }
-                        }
-                        else if (difference <= -15){
-                            userAuraRGB[i]-=15;
-                        }
-                        else if (difference >= 30){
-                            userAuraRGB[i]+=30;
-                        }
-                        else {
-                            userAuraRGB[i]+=difference;
-                        }
+                AuraAggregator.putTone(toneDetails, AuraAggregator.getUserHistoryPath(messageSenderID), messagePushID, toneResult);
 
-                        dbAuraRef.setValue(Color.rgb(userAuraRGB[0], userAuraRGB[1],userAuraRGB[2]));
-
-                    }
-                }
-            }
+                //held until the message is written, so writing the message again cannot reset its tone
+                Outbox.getInstance().enqueueAfter(messageWriteID, toneDetails, null);
 
-            @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
+                //only shown in the inbox if it is still the newest message of the chat
+                ConversationIndex.putMessage(previewWriteID, messageSenderID, messageReceiverID, messagePushID,
+                        messageText, toneResult);
 
+                AuraAggregator.getInstance().scheduleUser(messageSenderID);
             }
         });
-
     }
 
-
 }
@@ -7,6 +7,8 @@ package edu.uga.cs.aura;
 
 import android.graphics.Color;
 import android.graphics.drawable.GradientDrawable;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -14,18 +16,19 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 import com.mikhaellopez.circularimageview.CircularImageView;
 import com.squareup.picasso.Picasso;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static android.view.ViewGroup.LayoutParams.WRAP_CONTENT;
 
@@ -43,7 +46,38 @@ public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageV
 
     private List<Message> userMessagesList;
     private FirebaseAuth auth;
-    private DatabaseReference dbFromUserRef;
+
+    //messages that arrived since the last frame, added to the list together
+    private final List<Message> pendingMessages = new ArrayList<Message>();
+    private final Set<String> messageIDs = new HashSet<String>();
+    private final Map<String, Long> stableIDs = new HashMap<String, Long>();
+    private long nextStableID;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private OnMessagesAppendedListener onMessagesAppendedListener;
+
+    private final Runnable flushPendingMessages = new Runnable() {
+        @Override
+        public void run() {
+            List<Message> batch = new ArrayList<Message>(pendingMessages);
+            pendingMessages.clear();
+
+            int count = appendMessages(batch);
+            if (count > 0 && onMessagesAppendedListener != null) {
+                onMessagesAppendedListener.onMessagesAppended(count);
+            }
+        }
+    };
+
+    /**
+     * Listener for when messages from addMessage were appended to the end of the list
+     */
+    public interface OnMessagesAppendedListener {
+        /**
+         * called once per batch of appended messages
+         * @param count the number of messages that were appended
+         */
+        void onMessagesAppended(int count);
+    }
 
 
     /**
@@ -53,6 +87,18 @@ public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageV
     public MessageAdapter (List<Message> userMessagesList)
     {
         this.userMessagesList = userMessagesList;
+        for (Message message : userMessagesList) {
+            messageIDs.add(message.getMessageID());
+        }
+        setHasStableIds(true);
+    }
+
+    /**
+     * sets the listener that is told when a batch of messages was appended
+     * @param onMessagesAppendedListener the listener
+     */
+    public void setOnMessagesAppendedListener(OnMessagesAppendedListener onMessagesAppendedListener) {
+        this.onMessagesAppendedListener = onMessagesAppendedListener;
     }
 
     /**
@@ -64,6 +110,7 @@ public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageV
 
         public CircularImageView receiverProfileImage;
 
+        private UserProfileCache.Subscription profileSubscription;
 
         /**
          * Constructor foe the holder that has the information about each text
@@ -111,39 +158,10 @@ public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageV
 
         String fromUserID = message.getFromID();
 
-        dbFromUserRef = FirebaseDatabase.getInstance().getReference().child("Users").child(fromUserID);
-
-        dbFromUserRef.addValueEventListener(new ValueEventListener() {
-            /**
-             * Overrides the onDataChange to add the texts
-             * @param dataSnapshot to be watched from the database
-             */
-            @Override
-            public void onDataChange(DataSnapshot dataSnapshot)
-            {
-                if (dataSnapshot.hasChild("imageUrl"))
-                {
-                    String receiverImageUrl = dataSnapshot.child("imageUrl").getValue().toString();
-
-                    if(TextUtils.isEmpty(receiverImageUrl) || receiverImageUrl.equals("DEFAULT")){
-                        messageViewHolder.receiverProfileImage.setImageResource(R.drawable.default_profile_image);
-                    }
-                    else {
-                        Picasso.get().load(receiverImageUrl).placeholder(R.drawable.default_profile_image).into(messageViewHolder.receiverProfileImage);
-                    }
-
-                }
-
-                if (dataSnapshot.hasChild("aura")){
-                    messageViewHolder.receiverProfileImage.setBorderColor(dataSnapshot.child("aura").getValue(Integer.class));
-                }
-            }
-
-            @Override
-            public void onCancelled(DatabaseError databaseError) {
-
-            }
-        });
+        if (messageViewHolder.profileSubscription != null) {
+            messageViewHolder.profileSubscription.cancel();
+            messageViewHolder.profileSubscription = null;
+        }
 
         messageViewHolder.receiverMessageText.setVisibility(View.GONE);
         messageViewHolder.receiverProfileImage.setVisibility(View.GONE);
@@ -159,6 +177,27 @@ public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageV
             messageViewHolder.senderMessageText.setText(message.getMessage());
         }
         else {
+            messageViewHolder.profileSubscription = UserProfileCache.getInstance().observe(fromUserID,
+                    new UserProfileCache.OnProfileChangedListener() {
+                        /**
+                         * Overrides the onProfileChanged to show the sender's image and aura
+                         * @param user the sender's profile
+                         */
+                        @Override
+                        public void onProfileChanged(User user) {
+                            String receiverImageUrl = user.getImageUrl();
+
+                            if(TextUtils.isEmpty(receiverImageUrl) || receiverImageUrl.equals("DEFAULT")){
+                                messageViewHolder.receiverProfileImage.setImageResource(R.drawable.default_profile_image);
+                            }
+                            else {
+                                Picasso.get().load(receiverImageUrl).placeholder(R.drawable.default_profile_image).into(messageViewHolder.receiverProfileImage);
+                            }
+
+                            messageViewHolder.receiverProfileImage.setBorderColor(user.getAura());
+                        }
+                    });
+
             messageViewHolder.receiverProfileImage.setVisibility(View.VISIBLE);
             messageViewHolder.receiverMessageText.setVisibility(View.VISIBLE);
             messageViewHolder.receiverMessageText.setBackgroundColor(Color.WHITE);
@@ -172,6 +211,19 @@ public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageV
     }
 
 
+    /**
+     * Overrides the onViewRecycled to stop listening to the sender's profile
+     * @param messageViewHolder that is being recycled
+     */
+    @Override
+    public void onViewRecycled(@NonNull MessageViewHolder messageViewHolder)
+    {
+        if (messageViewHolder.profileSubscription != null) {
+            messageViewHolder.profileSubscription.cancel();
+            messageViewHolder.profileSubscription = null;
+        }
+    }
+
     /**
      * Overrides the getItemCount to return the size of the messages list
      * @return the number of messages in the list
@@ -182,6 +234,159 @@ public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageV
         return userMessagesList.size();
     }
 
+    /**
+     * Overrides the getItemId to give each message a stable id based on its messageID
+     * @param position of the message
+     * @return the stable id of the message
+     */
+    @Override
+    public long getItemId(int position)
+    {
+        String messageID = userMessagesList.get(position).getMessageID();
+        Long stableID = stableIDs.get(messageID);
+        if (stableID == null) {
+            stableID = nextStableID++;
+            stableIDs.put(messageID, stableID);
+        }
+        return stableID;
+    }
+
+    /**
+     * adds a message to the end of the list. Messages added in the same frame are inserted
+     * together with one notifyItemRangeInserted instead of one rebind per message
+     * @param message the new message
+     */
+    public void addMessage(Message message)
+    {
+        pendingMessages.add(message);
+        if (pendingMessages.size() == 1) {
+            mainHandler.post(flushPendingMessages);
+        }
+    }
+
+    /**
+     * adds messages to the end of the list, skipping messages that are already shown
+     * @param messages the new messages, oldest first
+     * @return the number of messages that were added
+     */
+    public int appendMessages(List<Message> messages)
+    {
+        int start = userMessagesList.size();
+        for (Message message : messages) {
+            if (messageIDs.add(message.getMessageID())) {
+                userMessagesList.add(message);
+            }
+        }
+
+        int count = userMessagesList.size() - start;
+        if (count > 0) {
+            notifyItemRangeInserted(start, count);
+        }
+        return count;
+    }
+
+    /**
+     * adds messages to the front of the list, skipping messages that are already shown
+     * @param messages the older messages, oldest first
+     */
+    public void prependMessages(List<Message> messages)
+    {
+        List<Message> newMessages = new ArrayList<Message>();
+        for (Message message : messages) {
+            if (messageIDs.add(message.getMessageID())) {
+                newMessages.add(message);
+            }
+        }
+
+        userMessagesList.addAll(0, newMessages);
+        notifyItemRangeInserted(0, newMessages.size());
+    }
+
+    /**
+     * removes a range of messages from the list
+     * @param start position of the first message to remove
+     * @param count number of messages to remove
+     */
+    public void removeMessages(int start, int count)
+    {
+        List<Message> removed = userMessagesList.subList(start, start + count);
+        for (Message message : removed) {
+            messageIDs.remove(message.getMessageID());
+            stableIDs.remove(message.getMessageID());
+        }
+        removed.clear();
+        notifyItemRangeRemoved(start, count);
+    }
+
+    /**
+     * replaces a message that is already shown, rebinding only its row
+     * @param message the changed message
+     */
+    public void updateMessage(Message message)
+    {
+        //recent messages are the ones that change, so look from the end
+        for (int i = userMessagesList.size() - 1; i >= 0; i--) {
+            if (userMessagesList.get(i).getMessageID().equals(message.getMessageID())) {
+                userMessagesList.set(i, message);
+                notifyItemChanged(i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * replaces the whole list, using DiffUtil so only the rows that changed are rebound
+     * @param messages the new list of messages
+     */
+    public void setMessages(final List<Message> messages)
+    {
+        mainHandler.removeCallbacks(flushPendingMessages);
+        pendingMessages.clear();
+
+        final List<Message> oldMessages = new ArrayList<Message>(userMessagesList);
+        DiffUtil.DiffResult diffResult = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return oldMessages.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return messages.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                return oldMessages.get(oldItemPosition).getMessageID().equals(messages.get(newItemPosition).getMessageID());
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                Message oldMessage = oldMessages.get(oldItemPosition);
+                Message newMessage = messages.get(newItemPosition);
+                return oldMessage.getTone() == newMessage.getTone()
+                        && TextUtils.equals(oldMessage.getMessage(), newMessage.getMessage());
+            }
+        });
+
+        userMessagesList.clear();
+        userMessagesList.addAll(messages);
+        messageIDs.clear();
+        for (Message message : messages) {
+            messageIDs.add(message.getMessageID());
+        }
+        diffResult.dispatchUpdatesTo(this);
+    }
+
+    /**
+     * drops any messages that were added but not yet shown
+     */
+    public void cancelPendingMessages()
+    {
+        mainHandler.removeCallbacks(flushPendingMessages);
+        pendingMessages.clear();
+    }
+
     /**
      * sets the shape that goes in the background of each text that is sent
      * @param tone of the message
@@ -0,0 +1,573 @@
+/**
+ * @author Jett Thistle
+ * @author Kirtana Nidamarti
+ */
+
+package edu.uga.cs.aura;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Loads a conversation a page at a time instead of all at once.
+ *
+ * The newest page is loaded with limitToLast, or the page starting at the last read message when
+ * there are more unread messages than fit on a page. Older pages are loaded when the user scrolls up
+ * using the push ID of the oldest loaded message as the cursor, and pages that end up far
+ * away from the viewport are dropped from the messages list so it never grows without bound.
+ * Every loaded page listens to its own range of keys for changes, like a tone being added to a
+ * message that was still pending when it was loaded, until the page is dropped. The listener set
+ * with setOnNewestMessageListener is told each time a newer message than any shown before is
+ * loaded at the end of the list, so the chat can move its read cursor while it is open.
+ */
+public class MessagePager {
+
+    public static final int PAGE_SIZE = 30;
+    public static final int MAX_LOADED_PAGES = 4;
+    private static final int PREFETCH_DISTANCE = 5;
+
+    private final DatabaseReference dbConversationRef;
+    private final List<Message> messagesList;
+    private final MessageAdapter messageAdapter;
+    private final RecyclerView messagesRecyclerView;
+    private final LinearLayoutManager linearLayoutManager;
+
+    private Query liveQuery;
+    private ChildEventListener liveListener;
+    private RecyclerView.OnScrollListener scrollListener;
+    private final List<PageWatcher> pageWatchers = new ArrayList<PageWatcher>();
+
+    private OnNewestMessageListener onNewestMessageListener;
+    private String newestShownKey;
+
+    private boolean loadingOlder, loadingNewer, reachedOldest, atNewest, started;
+
+    /**
+     * Listener for when a newer message is shown at the end of the list
+     */
+    public interface OnNewestMessageListener {
+        /**
+         * called after a message newer than every message shown before it was loaded
+         * @param messageID push ID of the message
+         * @param isNewest if it is the newest message of the conversation
+         */
+        void onNewestMessage(String messageID, boolean isNewest);
+    }
+
+    /**
+     * Constructor for the pager of a single conversation
+     * @param dbConversationRef the Messages/<sender>/<receiver> reference
+     * @param messagesList the list backing the adapter, only changed through the adapter
+     * @param messageAdapter the adapter showing the messages
+     * @param messagesRecyclerView the recycler view the messages are shown in
+     */
+    public MessagePager(DatabaseReference dbConversationRef, List<Message> messagesList,
+                        MessageAdapter messageAdapter, RecyclerView messagesRecyclerView) {
+        this.dbConversationRef = dbConversationRef;
+        this.messagesList = messagesList;
+        this.messageAdapter = messageAdapter;
+        this.messagesRecyclerView = messagesRecyclerView;
+        this.linearLayoutManager = (LinearLayoutManager) messagesRecyclerView.getLayoutManager();
+    }
+
+    /**
+     * sets the listener told when a newer message is shown
+     * @param onNewestMessageListener the listener
+     */
+    public void setOnNewestMessageListener(OnNewestMessageListener onNewestMessageListener) {
+        this.onNewestMessageListener = onNewestMessageListener;
+    }
+
+    /**
+     * Loads the newest page of the conversation and starts listening for new messages
+     */
+    public void start() {
+        start(null, null);
+    }
+
+    /**
+     * Loads the conversation from the last message the user read and starts listening for new messages
+     * @param readCursor push ID of the last read message, or null to load the newest page
+     * @param newestKey push ID of the newest message in the conversation, or null to load the newest page
+     */
+    public void start(String readCursor, String newestKey) {
+        if (started) {
+            return;
+        }
+        started = true;
+
+        reachedOldest = false;
+        atNewest = true;
+        newestShownKey = null;
+
+        messageAdapter.setOnMessagesAppendedListener(new MessageAdapter.OnMessagesAppendedListener() {
+            /**
+             * Overrides the onMessagesAppended method to trim old pages and scroll down once per batch
+             * @param count the number of messages that were appended
+             */
+            @Override
+            public void onMessagesAppended(int count) {
+                //only drop old pages if the user is not reading them
+                if (linearLayoutManager.findLastVisibleItemPosition() >= messagesList.size() - 1 - count - PREFETCH_DISTANCE) {
+                    trimOldest();
+                }
+                scrollToBottom();
+                notifyNewestMessage(getNewestLoadedKey());
+            }
+        });
+
+        scrollListener = new RecyclerView.OnScrollListener() {
+            /**
+             * Overrides the onScrolled method to load a page when the user gets close to an edge
+             * @param recyclerView that was scrolled
+             * @param dx horizontal scroll amount
+             * @param dy vertical scroll amount
+             */
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy < 0 && linearLayoutManager.findFirstVisibleItemPosition() <= PREFETCH_DISTANCE) {
+                    loadOlder();
+                }
+                else if (dy > 0 && linearLayoutManager.findLastVisibleItemPosition() >= messagesList.size() - 1 - PREFETCH_DISTANCE) {
+                    loadNewer();
+                }
+            }
+        };
+        messagesRecyclerView.addOnScrollListener(scrollListener);
+
+        if (readCursor == null || newestKey == null) {
+            loadNewestPage();
+        }
+        else {
+            loadFromCursor(readCursor, newestKey);
+        }
+    }
+
+    /**
+     * Loads the newest page of the conversation and listens after it
+     */
+    private void loadNewestPage() {
+        dbConversationRef.orderByKey().limitToLast(PAGE_SIZE)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    /**
+                     * Overrides the onDataChange method to show the newest page and listen after it
+                     * @param dataSnapshot the newest page of the conversation
+                     */
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                        if (!started) {
+                            return;
+                        }
+
+                        List<Message> page = readPage(dataSnapshot);
+                        reachedOldest = page.size() < PAGE_SIZE;
+
+                        //coming back to the activity, only rebind the rows that changed
+                        messageAdapter.setMessages(page);
+                        watchPage(page);
+                        scrollToBottom();
+                        notifyNewestMessage(page.isEmpty() ? null : page.get(page.size() - 1).getMessageID());
+
+                        listenForNewMessages(page.isEmpty() ? null : page.get(page.size() - 1).getMessageID());
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError databaseError) {
+
+                    }
+                });
+    }
+
+    /**
+     * Loads the page starting at the last read message, so only the unread messages after it are downloaded
+     * @param readCursor push ID of the last read message
+     * @param newestKey push ID of the newest message in the conversation
+     */
+    private void loadFromCursor(String readCursor, final String newestKey) {
+        dbConversationRef.orderByKey().startAt(readCursor).limitToFirst(PAGE_SIZE)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    /**
+                     * Overrides the onDataChange method to show the last read message at the top
+                     * @param dataSnapshot the page starting at the last read message
+                     */
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                        if (!started) {
+                            return;
+                        }
+
+                        List<Message> page = readPage(dataSnapshot);
+                        if (page.isEmpty()) {
+                            //the cursor message is gone, fall back to the newest page
+                            loadNewestPage();
+                            return;
+                        }
+
+                        String lastKey = page.get(page.size() - 1).getMessageID();
+                        atNewest = lastKey.compareTo(newestKey) >= 0;
+
+                        messageAdapter.setMessages(page);
+                        watchPage(page);
+                        linearLayoutManager.scrollToPositionWithOffset(0, 0);
+                        notifyNewestMessage(lastKey);
+
+                        //the messages up to newestKey are read by loadNewer as the user scrolls down
+                        listenForNewMessages(atNewest ? lastKey : newestKey);
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError databaseError) {
+
+                    }
+                });
+    }
+
+    /**
+     * Stops listening for new messages and page requests
+     */
+    public void stop() {
+        started = false;
+        loadingOlder = false;
+        loadingNewer = false;
+
+        if (liveQuery != null && liveListener != null) {
+            liveQuery.removeEventListener(liveListener);
+        }
+        liveQuery = null;
+        liveListener = null;
+        for (PageWatcher pageWatcher : pageWatchers) {
+            pageWatcher.remove();
+        }
+        pageWatchers.clear();
+        messageAdapter.cancelPendingMessages();
+        messageAdapter.setOnMessagesAppendedListener(null);
+
+        if (scrollListener != null) {
+            messagesRecyclerView.removeOnScrollListener(scrollListener);
+            scrollListener = null;
+        }
+    }
+
+    /**
+     * Listens for messages pushed after the newest message of the first page, and for changes to them
+     * @param newestKey push ID of the newest loaded message, or null if the conversation is empty
+     */
+    private void listenForNewMessages(final String newestKey) {
+        liveQuery = newestKey == null ? dbConversationRef.orderByKey() : dbConversationRef.orderByKey().startAt(newestKey);
+
+        liveListener = new ChildEventListener() {
+            /**
+             * Overrides the onChildAdded method to add new messages while the newest page is shown
+             * @param dataSnapshot from the database
+             * @param s key of the previous child
+             */
+            @Override
+            public void onChildAdded(@NonNull DataSnapshot dataSnapshot, String s) {
+                //startAt is inclusive, the cursor message is already shown
+                if (dataSnapshot.getKey().equals(newestKey)) {
+                    return;
+                }
+
+                //the newer messages were evicted, they will be read back by loadNewer
+                if (!atNewest) {
+                    return;
+                }
+
+                messageAdapter.addMessage(dataSnapshot.getValue(Message.class));
+            }
+
+            /**
+             * Overrides the onChildChanged method to update a message in place, like when its tone is added
+             * @param dataSnapshot from the database
+             * @param s key of the previous child
+             */
+            @Override
+            public void onChildChanged(@NonNull DataSnapshot dataSnapshot, String s) {
+                messageAdapter.updateMessage(dataSnapshot.getValue(Message.class));
+            }
+
+            @Override
+            public void onChildRemoved(@NonNull DataSnapshot dataSnapshot) {
+
+            }
+
+            @Override
+            public void onChildMoved(@NonNull DataSnapshot dataSnapshot, String s) {
+
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError databaseError) {
+
+            }
+        };
+
+        liveQuery.addChildEventListener(liveListener);
+    }
+
+    /**
+     * Loads the page of messages before the oldest loaded message
+     */
+    public void loadOlder() {
+        if (!started || loadingOlder || reachedOldest || messagesList.isEmpty()) {
+            return;
+        }
+        loadingOlder = true;
+
+        final String oldestKey = messagesList.get(0).getMessageID();
+
+        //endAt is inclusive, so ask for one extra and drop the cursor message
+        dbConversationRef.orderByKey().endAt(oldestKey).limitToLast(PAGE_SIZE + 1)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    /**
+                     * Overrides the onDataChange method to put the older page in front of the list
+                     * @param dataSnapshot the older page of the conversation
+                     */
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                        loadingOlder = false;
+                        if (!started || messagesList.isEmpty() || !oldestKey.equals(messagesList.get(0).getMessageID())) {
+                            return;
+                        }
+
+                        List<Message> page = readPage(dataSnapshot);
+                        if (!page.isEmpty() && oldestKey.equals(page.get(page.size() - 1).getMessageID())) {
+                            page.remove(page.size() - 1);
+                        }
+                        reachedOldest = page.size() < PAGE_SIZE;
+
+                        messageAdapter.prependMessages(page);
+                        watchPage(page);
+                        trimNewest();
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError databaseError) {
+                        loadingOlder = false;
+                    }
+                });
+    }
+
+    /**
+     * Loads the page of messages after the newest loaded message, if newer pages were evicted
+     */
+    public void loadNewer() {
+        if (!started || loadingNewer || atNewest || messagesList.isEmpty()) {
+            return;
+        }
+        loadingNewer = true;
+
+        final String newestKey = messagesList.get(messagesList.size() - 1).getMessageID();
+
+        //startAt is inclusive, so ask for one extra and drop the cursor message
+        dbConversationRef.orderByKey().startAt(newestKey).limitToFirst(PAGE_SIZE + 1)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    /**
+                     * Overrides the onDataChange method to put the newer page at the end of the list
+                     * @param dataSnapshot the newer page of the conversation
+                     */
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                        loadingNewer = false;
+                        if (!started || messagesList.isEmpty()
+                                || !newestKey.equals(messagesList.get(messagesList.size() - 1).getMessageID())) {
+                            return;
+                        }
+
+                        List<Message> page = readPage(dataSnapshot);
+                        if (!page.isEmpty() && newestKey.equals(page.get(0).getMessageID())) {
+                            page.remove(0);
+                        }
+                        atNewest = page.size() < PAGE_SIZE;
+
+                        messageAdapter.appendMessages(page);
+                        watchPage(page);
+                        trimOldest();
+                        notifyNewestMessage(page.isEmpty() ? null : page.get(page.size() - 1).getMessageID());
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError databaseError) {
+                        loadingNewer = false;
+                    }
+                });
+    }
+
+    /**
+     * tells if the newest message of the conversation is loaded
+     * @return true if there are no newer messages to load
+     */
+    public boolean isAtNewest() {
+        return atNewest;
+    }
+
+    /**
+     * gets the push ID of the newest loaded message
+     * @return the push ID, or null if nothing is loaded
+     */
+    public String getNewestLoadedKey() {
+        return messagesList.isEmpty() ? null : messagesList.get(messagesList.size() - 1).getMessageID();
+    }
+
+    /**
+     * Tells the listener about a message shown at the end of the list, if it is newer than every
+     * message shown before it
+     * @param messageID push ID of the message, or null if nothing was shown
+     */
+    private void notifyNewestMessage(String messageID) {
+        if (messageID == null || onNewestMessageListener == null
+                || (newestShownKey != null && newestShownKey.compareTo(messageID) >= 0)) {
+            return;
+        }
+        newestShownKey = messageID;
+        onNewestMessageListener.onNewestMessage(messageID, atNewest);
+    }
+
+    /**
+     * Drops the newest messages once more than MAX_LOADED_PAGES pages are loaded
+     */
+    private void trimNewest() {
+        int excess = messagesList.size() - PAGE_SIZE * MAX_LOADED_PAGES;
+        if (excess <= 0) {
+            return;
+        }
+
+        messageAdapter.removeMessages(messagesList.size() - excess, excess);
+        atNewest = false;
+        unwatchDroppedPages();
+    }
+
+    /**
+     * Drops the oldest messages once more than MAX_LOADED_PAGES pages are loaded
+     */
+    private void trimOldest() {
+        int excess = messagesList.size() - PAGE_SIZE * MAX_LOADED_PAGES;
+        if (excess <= 0) {
+            return;
+        }
+
+        messageAdapter.removeMessages(0, excess);
+        reachedOldest = false;
+        unwatchDroppedPages();
+    }
+
+    /**
+     * Starts listening for changes to the messages of a page that was just loaded
+     * @param page the messages of the page, in key order
+     */
+    private void watchPage(List<Message> page) {
+        if (!page.isEmpty()) {
+            pageWatchers.add(new PageWatcher(page.get(0).getMessageID(), page.get(page.size() - 1).getMessageID()));
+        }
+    }
+
+    /**
+     * Stops listening to the pages that have no message left in the messages list
+     */
+    private void unwatchDroppedPages() {
+        String oldestKey = messagesList.isEmpty() ? null : messagesList.get(0).getMessageID();
+        String newestKey = getNewestLoadedKey();
+
+        Iterator<PageWatcher> iterator = pageWatchers.iterator();
+        while (iterator.hasNext()) {
+            PageWatcher pageWatcher = iterator.next();
+            if (oldestKey == null || pageWatcher.lastKey.compareTo(oldestKey) < 0 || pageWatcher.firstKey.compareTo(newestKey) > 0) {
+                pageWatcher.remove();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Scrolls to the newest message
+     */
+    private void scrollToBottom() {
+        if (!messagesList.isEmpty()) {
+            messagesRecyclerView.smoothScrollToPosition(messagesList.size() - 1);
+        }
+    }
+
+    /**
+     * Reads every message in a page snapshot in key order
+     * @param dataSnapshot the page
+     * @return the messages in the page
+     */
+    private static List<Message> readPage(DataSnapshot dataSnapshot) {
+        List<Message> page = new ArrayList<Message>();
+        for (DataSnapshot messageSnapshot : dataSnapshot.getChildren()) {
+            page.add(messageSnapshot.getValue(Message.class));
+        }
+        return page;
+    }
+
+    /**
+     * listens for changes to the messages between the first and last key of one loaded page
+     */
+    private class PageWatcher {
+        final String firstKey, lastKey;
+        final Query query;
+        final ChildEventListener listener;
+
+        PageWatcher(String firstKey, String lastKey) {
+            this.firstKey = firstKey;
+            this.lastKey = lastKey;
+            this.query = dbConversationRef.orderByKey().startAt(firstKey).endAt(lastKey);
+            this.listener = new ChildEventListener() {
+                /**
+                 * Overrides the onChildAdded method to ignore the messages of the page, they are already shown
+                 * @param dataSnapshot from the database
+                 * @param s key of the previous child
+                 */
+                @Override
+                public void onChildAdded(@NonNull DataSnapshot dataSnapshot, String s) {
+
+                }
+
+                /**
+                 * Overrides the onChildChanged method to update a message in place, like when its tone is added
+                 * @param dataSnapshot from the database
+                 * @param s key of the previous child
+                 */
+                @Override
+                public void onChildChanged(@NonNull DataSnapshot dataSnapshot, String s) {
+                    messageAdapter.updateMessage(dataSnapshot.getValue(Message.class));
+                }
+
+                @Override
+                public void onChildRemoved(@NonNull DataSnapshot dataSnapshot) {
+
+                }
+
+                @Override
+                public void onChildMoved(@NonNull DataSnapshot dataSnapshot, String s) {
+
+                }
+
+                @Override
+                public void onCancelled(@NonNull DatabaseError databaseError) {
+
+                }
+            };
+            query.addChildEventListener(listener);
+        }
+
+        /**
+         * stops listening to the page
+         */
+        void remove() {
+            query.removeEventListener(listener);
+        }
+    }
+}
@@ -7,6 +7,7 @@ package edu.uga.cs.aura;
 
 
 import android.content.Intent;
+import android.graphics.Color;
 import android.os.Bundle;
 import android.text.TextUtils;
 import android.view.LayoutInflater;
@@ -22,11 +23,9 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.firebase.ui.database.FirebaseRecyclerAdapter;
 import com.firebase.ui.database.FirebaseRecyclerOptions;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
+import com.google.firebase.database.Query;
 import com.mikhaellopez.circularimageview.CircularImageView;
 import com.squareup.picasso.Picasso;
 
@@ -36,12 +35,14 @@ import com.squareup.picasso.Picasso;
  */
 public class MessagesFrag extends Fragment {
 
+    public static final int INBOX_SIZE = 50;
+
     private View messageFragView;
     private RecyclerView messagesRecyclerView;
 
-    private DatabaseReference dbMessagesRef, dbUsersRef;
-    private FirebaseRecyclerOptions<User> options;
-    private FirebaseRecyclerAdapter<User, MessageRoomViewHolder> adapter;
+    private DatabaseReference dbConversationsRef;
+    private FirebaseRecyclerOptions<Conversation> options;
+    private FirebaseRecyclerAdapter<Conversation, MessageRoomViewHolder> adapter;
     private FirebaseAuth auth;
     private String currentUserID;
 
@@ -67,94 +68,93 @@ public class MessagesFrag extends Fragment {
 
         auth = FirebaseAuth.getInstance();
         currentUserID = auth.getCurrentUser().getUid();
-        dbMessagesRef = FirebaseDatabase.getInstance().getReference().child("Contacts").child(currentUserID);
-        dbUsersRef = FirebaseDatabase.getInstance().getReference().child("Users");
+        dbConversationsRef = FirebaseDatabase.getInstance().getReference().child("Conversations").child(currentUserID);
+
+        ConversationIndex.backfillOnce(getContext(), currentUserID);
 
         messagesRecyclerView = messageFragView.findViewById(R.id.message_recycler_view);
-        messagesRecyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
+
+        //the query is oldest first, so show it from the bottom up to have the newest chat on top
+        LinearLayoutManager linearLayoutManager = new LinearLayoutManager(getContext());
+        linearLayoutManager.setReverseLayout(true);
+        linearLayoutManager.setStackFromEnd(true);
+        messagesRecyclerView.setLayoutManager(linearLayoutManager);
 
 
         return messageFragView;
     }
 
     /**
-     * Overrides the onStart Method to set up the groups
+     * Overrides the onStart Method to set up the chats, newest first
      */
     @Override
     public void onStart() {
         super.onStart();
 
-        options = new FirebaseRecyclerOptions.Builder<User>()
-                        .setQuery(dbMessagesRef, User.class)
+        Query recentConversationsQuery = dbConversationsRef.orderByChild("timestamp").limitToLast(INBOX_SIZE);
+
+        options = new FirebaseRecyclerOptions.Builder<Conversation>()
+                        .setQuery(recentConversationsQuery, Conversation.class)
                         .build();
 
-        adapter = new FirebaseRecyclerAdapter<User, MessageRoomViewHolder>(options) {
+        adapter = new FirebaseRecyclerAdapter<Conversation, MessageRoomViewHolder>(options) {
                     /**
                      * Overrides the onBindViewHolder to bind the views
-                     * @param holder of the group information
-                     * @param position of the group being added
-                     * @param model Group that is being added
+                     * @param holder of the chat information
+                     * @param position of the chat being added
+                     * @param model Conversation that is being added
                      */
                     @Override
-                    protected void onBindViewHolder(@NonNull final MessageRoomViewHolder holder, int position, @NonNull User model)
+                    protected void onBindViewHolder(@NonNull final MessageRoomViewHolder holder, int position, @NonNull Conversation model)
                     {
                         final String usersIDs = getRef(position).getKey();
-                        final String[] userImage = {"DEFAULT"};
 
-                        dbUsersRef.child(usersIDs).addValueEventListener(new ValueEventListener() {
+                        holder.lastMessageTextView.setText(model.getLastMessage());
+                        if (model.getUnreadCount() > 0) {
+                            holder.unreadCountTextView.setText(String.valueOf(model.getUnreadCount()));
+                            holder.unreadCountTextView.setVisibility(View.VISIBLE);
+                        }
+                        else {
+                            holder.unreadCountTextView.setVisibility(View.GONE);
+                        }
+
+                        if (holder.profileSubscription != null) {
+                            holder.profileSubscription.cancel();
+                            holder.profileSubscription = null;
+                        }
+
+                        //cleared until the profile is loaded, so a recycled row never shows or opens the chat it had before
+                        clearChat(holder);
+
+                        //one shared listener per user, and only while the row is on screen
+                        holder.profileSubscription = UserProfileCache.getInstance().observe(usersIDs,
+                                new UserProfileCache.OnProfileChangedListener() {
                             /**
-                             * Overrides the onDataChange to add the chats to the fragment
-                             * @param dataSnapshot to be watched from the database
+                             * Overrides the onProfileChanged to show the other user in the chat
+                             * @param user the profile of the other user in the chat
                              */
                             @Override
-                            public void onDataChange(DataSnapshot dataSnapshot)
+                            public void onProfileChanged(User user)
                             {
-                                if (dataSnapshot.exists())
-                                {
-
-                                    final String displayName = dataSnapshot.child("displayName").getValue(String.class);
-                                    final int aura = dataSnapshot.child("aura").getValue(Integer.class);
-
-                                    holder.userNameTextView.setText(displayName);
-
-                                    //If image exists, display it
-                                    if (dataSnapshot.hasChild("imageUrl")) {
-                                        userImage[0] = dataSnapshot.child("imageUrl").getValue().toString();
-                                        if(TextUtils.isEmpty(userImage[0]) || userImage[0].equals("DEFAULT")){
-                                            holder.profileImageView.setImageResource(R.drawable.default_profile_image);
-                                        }
-                                        else {
-                                            Picasso.get().load(userImage[0]).placeholder(R.drawable.default_profile_image).into(holder.profileImageView);
-                                        }
-                                    }
-
-                                    if ((dataSnapshot.child("aura").exists())){
-                                        holder.profileImageView.setBorderColor(dataSnapshot.child("aura").getValue(Integer.class));
-                                    }
-
-                                    holder.itemView.setOnClickListener(new View.OnClickListener() {
-                                        @Override
-                                        public void onClick(View view)
-                                        {
-                                            Intent messageIntent = new Intent(getContext(), MessageActivity.class);
-                                            messageIntent.putExtra("otherUserID", usersIDs);
-                                            messageIntent.putExtra("otherUserDisplayName", displayName);
-                                            messageIntent.putExtra("otherUserImageUrl", userImage[0]);
-                                            messageIntent.putExtra("otherUserAura", aura);
-                                            startActivity(messageIntent);
-                                        }
-                                    });
-
-                                }
-                            }
-
-                            @Override
-                            public void onCancelled(DatabaseError databaseError) {
-
+                                bindChat(holder, usersIDs, user);
                             }
                         });
                     }
 
+                    /**
+                     * Overrides the onViewRecycled to stop listening to the other user's profile
+                     * @param holder that is being recycled
+                     */
+                    @Override
+                    public void onViewRecycled(@NonNull MessageRoomViewHolder holder)
+                    {
+                        super.onViewRecycled(holder);
+                        if (holder.profileSubscription != null) {
+                            holder.profileSubscription.cancel();
+                            holder.profileSubscription = null;
+                        }
+                    }
+
                     /**
                      * Overrides the onCreateViewHolder to hold the views
                      * @param viewGroup that the view is added to
@@ -164,22 +164,83 @@ public class MessagesFrag extends Fragment {
                     @Override
                     public MessageRoomViewHolder onCreateViewHolder(@NonNull ViewGroup viewGroup, int i)
                     {
-                        View view = LayoutInflater.from(viewGroup.getContext()).inflate(R.layout.user_display, viewGroup, false);
+                        View view = LayoutInflater.from(viewGroup.getContext()).inflate(R.layout.conversation_display, viewGroup, false);
                         return new MessageRoomViewHolder(view);
                     }
                 };
 
         messagesRecyclerView.setAdapter(adapter);
         adapter.startListening();
+    }
+
+    /**
+     * Overrides the onStop method to stop listening to the chats
+     */
+    @Override
+    public void onStop() {
+        super.onStop();
+
+        if (adapter != null) {
+            adapter.stopListening();
+        }
+    }
+
+    /**
+     * Empties a row while the other user's profile loads
+     * @param holder the MessageRoomViewHolder of the row
+     */
+    private void clearChat(MessageRoomViewHolder holder)
+    {
+        Picasso.get().cancelRequest(holder.profileImageView);
+        holder.userNameTextView.setText("");
+        holder.profileImageView.setImageResource(R.drawable.default_profile_image);
+        holder.profileImageView.setBorderColor(Color.GRAY);
+        holder.itemView.setOnClickListener(null);
+    }
+
+    /**
+     * Shows a chat with another user in a row
+     * @param holder the MessageRoomViewHolder of the row
+     * @param usersIDs the ID of the other user
+     * @param user the other user's profile
+     */
+    private void bindChat(MessageRoomViewHolder holder, final String usersIDs, final User user)
+    {
+        final String userImage = TextUtils.isEmpty(user.getImageUrl()) ? "DEFAULT" : user.getImageUrl();
+
+        holder.userNameTextView.setText(user.getDisplayName());
+
+        //If image exists, display it
+        if(userImage.equals("DEFAULT")){
+            holder.profileImageView.setImageResource(R.drawable.default_profile_image);
+        }
+        else {
+            Picasso.get().load(userImage).placeholder(R.drawable.default_profile_image).into(holder.profileImageView);
+        }
 
+        holder.profileImageView.setBorderColor(user.getAura());
+
+        holder.itemView.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view)
+            {
+                Intent messageIntent = new Intent(getContext(), MessageActivity.class);
+                messageIntent.putExtra("otherUserID", usersIDs);
+                messageIntent.putExtra("otherUserDisplayName", user.getDisplayName());
+                messageIntent.putExtra("otherUserImageUrl", userImage);
+                messageIntent.putExtra("otherUserAura", user.getAura());
+                startActivity(messageIntent);
+            }
+        });
     }
 
     /**
      * creates the MessageRoomViewHolder
      */
     public static class MessageRoomViewHolder extends RecyclerView.ViewHolder  {
-        TextView userNameTextView;
+        TextView userNameTextView, lastMessageTextView, unreadCountTextView;
         CircularImageView profileImageView;
+        UserProfileCache.Subscription profileSubscription;
 
         /**
          * Constructor for the messageRoomViewHolder
@@ -190,6 +251,8 @@ public class MessagesFrag extends Fragment {
             super(itemView);
             userNameTextView = itemView.findViewById(R.id.username);
             profileImageView = itemView.findViewById(R.id.userProfileImage);
+            lastMessageTextView = itemView.findViewById(R.id.lastMessage);
+            unreadCountTextView = itemView.findViewById(R.id.unreadCount);
         }
     }
 }
@@ -0,0 +1,644 @@
+/**
+ * @author Jett Thistle
+ * @author Kirtana Nidamarti
+ */
+
+package edu.uga.cs.aura;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.MutableData;
+import com.google.firebase.database.Transaction;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps outgoing writes on disk until the database has them, so a message the user typed is
+ * never lost to a bad network or the app being closed.
+ *
+ * Each write is a multi-path update from the root of the database, appended to a log file
+ * before it is sent and marked done in the log once the database confirms it. The database
+ * shows a write in the chat right away, even offline. Writes that fail are retried with
+ * exponential backoff, or right away when the network comes back, and writes still in the
+ * log when the app starts are sent again. Writes that fail for a reason retrying cannot fix,
+ * like a denied permission, are logged and dropped. The writes must be safe to repeat, like setting
+ * fields of a message whose push ID was made when it was sent. Server values like
+ * ServerValue.TIMESTAMP are not: they are saved as placeholders and take the time the write is
+ * sent again, so put the time in the write, like the time in a push ID. A write that changes what an
+ * earlier write made, like the tone of a message, is enqueued after it: it is held until the
+ * earlier write is done, so sending the earlier one again can never undo it, and it is dropped if
+ * the earlier one is dropped.
+ *
+ * A write that must not replace something newer, like the preview of a chat's newest message,
+ * is enqueued with enqueueIfNewer instead. It sets fields at one path in a transaction that is
+ * skipped if the path's order field already sorts after the write's, and can count how many
+ * writes moved the order field, which repeating the write never counts twice. Only use it from
+ * the main thread.
+ */
+public class Outbox {
+
+    public static final long MIN_RETRY_DELAY_MS = 1000;
+    public static final long MAX_RETRY_DELAY_MS = 60000;
+
+    private static final String TAG = "Outbox";
+    private static final String FILE_NAME = "outbox";
+
+    private static Outbox instance;
+
+    private final DatabaseReference dbRootRef = FirebaseDatabase.getInstance().getReference();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    //the log is written off the main thread, in order
+    private final ExecutorService fileExecutor = Executors.newSingleThreadExecutor();
+
+    //writes that are not done yet, in the order they were sent
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>();
+
+    private File file;
+
+    //false until the writes left in the log have been read, the log is not emptied before that
+    private boolean loaded;
+
+    /**
+     * Listener for when a write reaches the database
+     */
+    public interface OnSentListener {
+        /**
+         * called on the main thread the first time the write is confirmed
+         */
+        void onSent();
+    }
+
+    /**
+     * what makes a write of fields at one path skip itself if the path has something newer
+     */
+    private static class Guard {
+        final String path;
+        final String orderField;
+        final String order;
+        final String countField;
+
+        Guard(String path, String orderField, String order, String countField) {
+            this.path = path;
+            this.orderField = orderField;
+            this.order = order;
+            this.countField = countField;
+        }
+    }
+
+    /**
+     * a write that is not done yet
+     */
+    private class Entry {
+        final String id;
+        final String afterID;
+        final Map<String, Object> updates;
+        final Guard guard;
+        OnSentListener listener;
+        boolean inFlight;
+        long retryDelay = MIN_RETRY_DELAY_MS;
+        Runnable scheduledRetry;
+
+        Entry(String id, String afterID, Map<String, Object> updates, Guard guard) {
+            this.id = id;
+            this.afterID = afterID;
+            this.updates = updates;
+            this.guard = guard;
+        }
+
+        /**
+         * tells if the write is held until an earlier write is done
+         * @return true while the earlier write is in the outbox
+         */
+        boolean isWaiting() {
+            return afterID != null && entries.containsKey(afterID);
+        }
+    }
+
+    /**
+     * Constructor for the outbox
+     */
+    private Outbox() {
+
+    }
+
+    /**
+     * gets the outbox shared by the whole app
+     * @return the outbox
+     */
+    public static Outbox getInstance() {
+        if (instance == null) {
+            instance = new Outbox();
+        }
+        return instance;
+    }
+
+    /**
+     * Reads the writes left in the log in the background and sends them again, and starts
+     * watching the network, does nothing if it was already started. Writes enqueued before the
+     * log is read are sent right away
+     * @param context used to find the app's files and the network
+     */
+    public void start(Context context) {
+        if (file != null) {
+            return;
+        }
+        file = new File(context.getApplicationContext().getFilesDir(), FILE_NAME);
+
+        //runs before any write to the log, the executor has one thread
+        fileExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final LinkedHashMap<String, Entry> saved = readLog();
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        addSavedEntries(saved);
+                    }
+                });
+            }
+        });
+
+        ConnectivityManager connectivityManager =
+                (ConnectivityManager) context.getApplicationContext().getSystemService(Context.CONNECTIVITY_SERVICE);
+        connectivityManager.registerNetworkCallback(
+                new NetworkRequest.Builder().addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET).build(),
+                new ConnectivityManager.NetworkCallback() {
+                    /**
+                     * Overrides the onAvailable method to retry failed writes right away
+                     * @param network that came back
+                     */
+                    @Override
+                    public void onAvailable(@NonNull Network network) {
+                        mainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                drain();
+                            }
+                        });
+                    }
+                });
+
+        drain();
+    }
+
+    /**
+     * Saves a write to the log and sends it
+     * @param updates paths from the root of the database and their new values
+     * @param listener told when the write reaches the database, can be null
+     * @return the ID of the write, to enqueue later writes after it
+     */
+    public String enqueue(Map<String, Object> updates, OnSentListener listener) {
+        return enqueueAfter(null, updates, listener);
+    }
+
+    /**
+     * Saves a write to the log and sends it once an earlier write is done
+     * @param afterID the ID of the earlier write, sent right away if it is already done or null
+     * @param updates paths from the root of the database and their new values
+     * @param listener told when the write reaches the database, can be null
+     * @return the ID of the write, to enqueue later writes after it
+     */
+    public String enqueueAfter(String afterID, Map<String, Object> updates, OnSentListener listener) {
+        Entry entry = new Entry(UUID.randomUUID().toString(), afterID, updates, null);
+        entry.listener = listener;
+        return add(entry);
+    }
+
+    /**
+     * Saves a write of fields at one path to the log and sends it once an earlier write is done,
+     * unless the path already has a newer write by then
+     * @param afterID the ID of the earlier write, sent right away if it is already done or null
+     * @param path from the root of the database
+     * @param orderField the field at the path that sorts writes, set to order
+     * @param order how new the write is, like a push ID
+     * @param fields the fields to set at the path
+     * @param countField a field that goes up by one the first time order is written at the path, or null
+     * @return the ID of the write, to enqueue later writes after it
+     */
+    public String enqueueIfNewer(String afterID, String path, String orderField, String order,
+                                 Map<String, Object> fields, String countField) {
+        return add(new Entry(UUID.randomUUID().toString(), afterID, fields,
+                new Guard(path, orderField, order, countField)));
+    }
+
+    /**
+     * Saves a new write to the log and sends it
+     * @param entry the write
+     * @return the ID of the write
+     */
+    private String add(Entry entry) {
+        entries.put(entry.id, entry);
+
+        appendToLog(toRecord(entry));
+
+        send(entry);
+        return entry.id;
+    }
+
+    /**
+     * Sends every write that is not in flight, skipping the backoff
+     */
+    private void drain() {
+        for (Entry entry : entries.values()) {
+            if (entry.scheduledRetry != null) {
+                mainHandler.removeCallbacks(entry.scheduledRetry);
+                entry.scheduledRetry = null;
+                entry.retryDelay = MIN_RETRY_DELAY_MS;
+            }
+            send(entry);
+        }
+    }
+
+    /**
+     * Sends a write, marking it done once the database confirms it or retrying it if it fails
+     * @param entry the write
+     */
+    private void send(final Entry entry) {
+        if (entry.inFlight || entry.scheduledRetry != null || entry.isWaiting()) {
+            return;
+        }
+        entry.inFlight = true;
+
+        if (entry.guard != null) {
+            sendIfNewer(entry);
+            return;
+        }
+
+        //while offline the database keeps the write and completes it once it is back online
+        dbRootRef.updateChildren(entry.updates, new DatabaseReference.CompletionListener() {
+            @Override
+            public void onComplete(DatabaseError databaseError, @NonNull DatabaseReference databaseReference) {
+                onSendComplete(entry, databaseError);
+            }
+        });
+    }
+
+    /**
+     * Sends a write of fields at one path in a transaction that leaves the path alone if it
+     * already has a newer write
+     * @param entry the write, with a guard
+     */
+    private void sendIfNewer(final Entry entry) {
+        final Guard guard = entry.guard;
+        dbRootRef.child(guard.path).runTransaction(new Transaction.Handler() {
+            /**
+             * Overrides the doTransaction method to set the fields if the write is at least as new as the path's
+             * @param currentData the path, empty until it has been read from the database
+             * @return the changed path, or abort if it has a newer write
+             */
+            @NonNull
+            @Override
+            public Transaction.Result doTransaction(@NonNull MutableData currentData) {
+                String currentOrder = currentData.child(guard.orderField).getValue(String.class);
+                if (currentOrder != null && currentOrder.compareTo(guard.order) > 0) {
+                    return Transaction.abort();
+                }
+
+                //only counted by the write that moves the order, so sending it again does not count it twice
+                if (guard.countField != null && !guard.order.equals(currentOrder)) {
+                    Long count = currentData.child(guard.countField).getValue(Long.class);
+                    currentData.child(guard.countField).setValue(count == null ? 1 : count + 1);
+                }
+                for (Map.Entry<String, Object> field : entry.updates.entrySet()) {
+                    currentData.child(field.getKey()).setValue(field.getValue());
+                }
+                currentData.child(guard.orderField).setValue(guard.order);
+                return Transaction.success(currentData);
+            }
+
+            /**
+             * Overrides the onComplete method to mark the write done, a skipped write is done too
+             * @param databaseError why the transaction failed, or null
+             * @param committed false if the path had a newer write
+             * @param currentData the path
+             */
+            @Override
+            public void onComplete(DatabaseError databaseError, boolean committed, DataSnapshot currentData) {
+                onSendComplete(entry, databaseError);
+            }
+        });
+    }
+
+    /**
+     * Marks a sent write done, or retries or drops it if it failed
+     * @param entry the write
+     * @param databaseError why it failed, or null if it reached the database
+     */
+    private void onSendComplete(Entry entry, DatabaseError databaseError) {
+        entry.inFlight = false;
+        if (entries.get(entry.id) != entry) {
+            return;
+        }
+
+        if (databaseError == null) {
+            markDone(entry);
+        }
+        else if (isRetryable(databaseError)) {
+            scheduleRetry(entry);
+        }
+        else {
+            //sending it again would fail the same way and hold up the writes behind it
+            Log.d(TAG, "dropping write " + entry.id + " " + entry.updates.keySet() + ": "
+                    + databaseError.getCode() + " " + databaseError.getMessage());
+            remove(entry, databaseError.getCode());
+        }
+    }
+
+    /**
+     * tells if a failed write may succeed if it is sent again
+     * @param databaseError why the write failed
+     * @return true for network and server problems, false for errors like a denied permission or an invalid path
+     */
+    private static boolean isRetryable(DatabaseError databaseError) {
+        switch (databaseError.getCode()) {
+            case DatabaseError.DISCONNECTED:
+            case DatabaseError.NETWORK_ERROR:
+            case DatabaseError.UNAVAILABLE:
+            case DatabaseError.WRITE_CANCELED:
+            case DatabaseError.MAX_RETRIES:
+            case DatabaseError.OPERATION_FAILED:
+            case DatabaseError.DATA_STALE:
+            case DatabaseError.EXPIRED_TOKEN:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Sends a failed write again later, waiting twice as long each time it fails
+     * @param entry the write
+     */
+    private void scheduleRetry(final Entry entry) {
+        Log.d(TAG, "write failed, retrying in " + entry.retryDelay + "ms");
+
+        entry.scheduledRetry = new Runnable() {
+            @Override
+            public void run() {
+                entry.scheduledRetry = null;
+                send(entry);
+            }
+        };
+        mainHandler.postDelayed(entry.scheduledRetry, entry.retryDelay);
+        entry.retryDelay = Math.min(entry.retryDelay * 2, MAX_RETRY_DELAY_MS);
+    }
+
+    /**
+     * Removes a write that reached the database and tells its listener
+     * @param entry the write
+     */
+    private void markDone(Entry entry) {
+        remove(entry, null);
+
+        if (entry.listener != null) {
+            entry.listener.onSent();
+            entry.listener = null;
+        }
+
+        for (Entry later : getEntriesAfter(entry.id)) {
+            send(later);
+        }
+    }
+
+    /**
+     * gets the writes held until a write is done
+     * @param id of the write
+     * @return the writes enqueued after it, in the order they were sent
+     */
+    private List<Entry> getEntriesAfter(String id) {
+        List<Entry> later = new ArrayList<Entry>();
+        for (Entry entry : entries.values()) {
+            if (id.equals(entry.afterID)) {
+                later.add(entry);
+            }
+        }
+        return later;
+    }
+
+    /**
+     * Removes a write from the outbox and marks it done in the log, so it is not sent again
+     * @param entry the write
+     * @param errorCode the DatabaseError code it was dropped for, or null if it reached the database
+     */
+    private void remove(Entry entry, Integer errorCode) {
+        entries.remove(entry.id);
+
+        if (entries.isEmpty() && loaded) {
+            //nothing is pending, start the log over so it does not grow forever
+            truncateLog();
+        }
+        else {
+            JSONObject record = new JSONObject();
+            try {
+                record.put("id", entry.id);
+                record.put("done", true);
+                if (errorCode != null) {
+                    record.put("errorCode", errorCode);
+                }
+            }
+            catch (JSONException e) {
+                Log.d(TAG, "could not mark write done", e);
+            }
+            appendToLog(record);
+        }
+
+        if (errorCode != null) {
+            //what they change was never written
+            for (Entry later : getEntriesAfter(entry.id)) {
+                Log.d(TAG, "dropping write " + later.id + " enqueued after " + entry.id);
+                remove(later, errorCode);
+            }
+        }
+    }
+
+    /**
+     * Adds the writes read from the log in front of the ones enqueued since, and sends them
+     * @param saved the writes that were not done when the app last closed
+     */
+    private void addSavedEntries(LinkedHashMap<String, Entry> saved) {
+        saved.putAll(entries);
+        entries.clear();
+        entries.putAll(saved);
+        loaded = true;
+
+        drain();
+    }
+
+    /**
+     * Reads the writes that were not done when the app last closed, then rewrites the log with
+     * only them. Runs on the file executor
+     * @return the writes, in the order they were sent
+     */
+    private LinkedHashMap<String, Entry> readLog() {
+        LinkedHashMap<String, Entry> saved = new LinkedHashMap<String, Entry>();
+        if (!file.exists()) {
+            return saved;
+        }
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    JSONObject record = new JSONObject(line);
+                    String id = record.getString("id");
+                    if (record.optBoolean("done")) {
+                        saved.remove(id);
+                    }
+                    else {
+                        String afterID = record.has("after") ? record.getString("after") : null;
+                        Guard guard = record.has("guard") ? toGuard(record.getJSONObject("guard")) : null;
+                        saved.put(id, new Entry(id, afterID, toMap(record.getJSONObject("updates")), guard));
+                    }
+                }
+                catch (JSONException e) {
+                    //the app was closed in the middle of writing this line
+                    Log.d(TAG, "skipping unreadable record", e);
+                }
+            }
+        }
+        catch (IOException e) {
+            Log.d(TAG, "could not read outbox", e);
+        }
+
+        //written here instead of through appendToLog, so it comes before writes enqueued while reading
+        try (Writer writer = new FileWriter(file, false)) {
+            for (Entry entry : saved.values()) {
+                writer.write(toRecord(entry).toString());
+                writer.write('\n');
+            }
+        }
+        catch (IOException e) {
+            Log.d(TAG, "could not rewrite outbox", e);
+        }
+        return saved;
+    }
+
+    /**
+     * Makes the record of a write that is saved to the log
+     * @param entry the write
+     * @return the record
+     */
+    private static JSONObject toRecord(Entry entry) {
+        JSONObject record = new JSONObject();
+        try {
+            record.put("id", entry.id);
+            if (entry.afterID != null) {
+                record.put("after", entry.afterID);
+            }
+            record.put("updates", new JSONObject(entry.updates));
+            if (entry.guard != null) {
+                JSONObject guard = new JSONObject();
+                guard.put("path", entry.guard.path);
+                guard.put("orderField", entry.guard.orderField);
+                guard.put("order", entry.guard.order);
+                if (entry.guard.countField != null) {
+                    guard.put("countField", entry.guard.countField);
+                }
+                record.put("guard", guard);
+            }
+        }
+        catch (JSONException e) {
+            Log.d(TAG, "could not save write", e);
+        }
+        return record;
+    }
+
+    /**
+     * Adds a record to the end of the log
+     * @param record to add
+     */
+    private void appendToLog(JSONObject record) {
+        final String line = record.toString();
+        fileExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try (Writer writer = new FileWriter(file, true)) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+                catch (IOException e) {
+                    Log.d(TAG, "could not write outbox", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Empties the log
+     */
+    private void truncateLog() {
+        fileExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (file.exists() && !file.delete()) {
+                    Log.d(TAG, "could not empty outbox");
+                }
+            }
+        });
+    }
+
+    /**
+     * Turns a saved guard back into the guard of a write
+     * @param json the saved guard
+     * @return the guard
+     * @throws JSONException if the guard is not readable
+     */
+    private static Guard toGuard(JSONObject json) throws JSONException {
+        String countField = json.has("countField") ? json.getString("countField") : null;
+        return new Guard(json.getString("path"), json.getString("orderField"), json.getString("order"), countField);
+    }
+
+    /**
+     * Turns a saved write back into the map the database takes
+     * @param json the saved write
+     * @return the paths and values, with nested objects as maps
+     * @throws JSONException if the write is not readable
+     */
+    private static Map<String, Object> toMap(JSONObject json) throws JSONException {
+        Map<String, Object> map = new HashMap<String, Object>();
+        Iterator<String> keys = json.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            Object value = json.get(key);
+            if (value == JSONObject.NULL) {
+                value = null;
+            }
+            else if (value instanceof JSONObject) {
+                value = toMap((JSONObject) value);
+            }
+            map.put(key, value);
+        }
+        return map;
+    }
+}
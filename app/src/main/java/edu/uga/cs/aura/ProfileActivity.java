@@ -370,6 +370,8 @@ public class ProfileActivity extends AppCompatActivity {
                                                                                 @Override
                                                                                 public void onComplete(@NonNull Task<Void> task)
                                                                                 {
+                                                                                    ContactSummaries.seed(senderUserID, receiverUserID);
+
                                                                                     profileInteractButton.setEnabled(true);
                                                                                     state = "friends";
                                                                                     profileInteractButton.setText("Remove Contact");
@@ -0,0 +1,50 @@
+/**
+ * @author Jett Thistle
+ * @author Kirtana Nidamarti
+ */
+
+package edu.uga.cs.aura;
+
+/**
+ * Reads and makes the time part of database push IDs, which start with the time they were made
+ * in milliseconds as 8 base 64 characters, so they sort in the order they were made
+ */
+public class PushIds {
+
+    private static final String PUSH_CHARS = "-0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz";
+
+    /**
+     * Makes the smallest push ID that could have been made at a time
+     * @param time in milliseconds
+     * @return the push ID prefix, every push ID made at or after the time sorts after it
+     */
+    public static String keyForTime(long time) {
+        char[] chars = new char[8];
+        for (int i = 7; i >= 0; i--) {
+            chars[i] = PUSH_CHARS.charAt((int) (time % 64));
+            time /= 64;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Reads the time a push ID was made
+     * @param pushID the push ID
+     * @return the time in milliseconds, or 0 if it is not a push ID
+     */
+    public static long timeOfKey(String pushID) {
+        if (pushID == null || pushID.length() < 8) {
+            return 0;
+        }
+
+        long time = 0;
+        for (int i = 0; i < 8; i++) {
+            int digit = PUSH_CHARS.indexOf(pushID.charAt(i));
+            if (digit < 0) {
+                return 0;
+            }
+            time = time * 64 + digit;
+        }
+        return time;
+    }
+}
@@ -46,7 +46,7 @@ public class RequestsDialogFrag extends DialogFragment {
     private RecyclerView requestsRecyclerView;
     private FirebaseRecyclerAdapter<User, RequestViewHolder> adapter;
     private FirebaseRecyclerOptions<User> options;
-    private DatabaseReference dbUsersRef, dbRequestsRef, dbContactsRef;
+    private DatabaseReference dbRequestsRef, dbContactsRef;
 
     private String currentUserID;
 
@@ -62,7 +62,6 @@ public class RequestsDialogFrag extends DialogFragment {
 
         currentUserID = FirebaseAuth.getInstance().getCurrentUser().getUid();
 
-        dbUsersRef = FirebaseDatabase.getInstance().getReference().child("Users");
         dbRequestsRef = FirebaseDatabase.getInstance().getReference().child("Requests");
         dbContactsRef = FirebaseDatabase.getInstance().getReference().child("Contacts");
 
@@ -83,12 +82,38 @@ public class RequestsDialogFrag extends DialogFragment {
             {
                 holder.itemView.findViewById(R.id.rejectButton).setVisibility(View.VISIBLE);
                 holder.itemView.findViewById(R.id.acceptButton).setVisibility(View.VISIBLE);
-                holder.profileImageView.setBorderColor(model.getAura());
 
                 final String requestID = getRef(position).getKey();
 
                 Log.d("requestID", requestID);
 
+                if (holder.profileSubscription != null) {
+                    holder.profileSubscription.cancel();
+                }
+
+                holder.profileSubscription = UserProfileCache.getInstance().observe(requestID,
+                        new UserProfileCache.OnProfileChangedListener() {
+                    /**
+                     * Overrides the onProfileChanged to show who the request is from or to
+                     * @param user the profile of the other user in the request
+                     */
+                    @Override
+                    public void onProfileChanged(User user)
+                    {
+                        final String requestProfileImageUrl = user.getImageUrl();
+
+                        if(TextUtils.isEmpty(requestProfileImageUrl) || requestProfileImageUrl.equals("DEFAULT")){
+                            holder.profileImageView.setImageResource(R.drawable.default_profile_image);
+                        }
+                        else {
+                            Picasso.get().load(requestProfileImageUrl).placeholder(R.drawable.default_profile_image).into(holder.profileImageView);
+                        }
+
+                        holder.profileImageView.setBorderColor(user.getAura());
+                        holder.displayNameTextView.setText(user.getDisplayName());
+                    }
+                });
+
                 DatabaseReference dbRequestTypeRef = getRef(position).child("requestState").getRef();
 
                 dbRequestTypeRef.addListenerForSingleValueEvent(new ValueEventListener() {
@@ -107,116 +132,83 @@ public class RequestsDialogFrag extends DialogFragment {
 
                             if (type.equals("received"))
                             {
-                                dbUsersRef.child(requestID).addListenerForSingleValueEvent(new ValueEventListener() {
-                                    /**
-                                     * Overrides the onDataChange to add the requests
-                                     * @param dataSnapshot to be watched from the database
-                                     */
+                                holder.acceptButton.setOnClickListener(new View.OnClickListener(){
                                     @Override
-                                    public void onDataChange(DataSnapshot dataSnapshot)
-                                    {
-                                        if (dataSnapshot.hasChild("imageUrl"))
-                                        {
-                                            final String requestProfileImageUrl = dataSnapshot.child("imageUrl").getValue(String.class);
-
-                                            if(TextUtils.isEmpty(requestProfileImageUrl) || requestProfileImageUrl.equals("DEFAULT")){
-                                                holder.profileImageView.setImageResource(R.drawable.default_profile_image);
-                                            }
-                                            else {
-                                                Picasso.get().load(requestProfileImageUrl).placeholder(R.drawable.default_profile_image).into(holder.profileImageView);
-                                            }
-
-                                        }
-
-                                        final String requestUserName = dataSnapshot.child("displayName").getValue().toString();
-
-                                        holder.displayNameTextView.setText(requestUserName);
-
-
-                                        holder.acceptButton.setOnClickListener(new View.OnClickListener(){
+                                    public void onClick(View v) {
+                                        dbContactsRef.child(currentUserID).child(requestID).child("contactState")
+                                                .setValue("Saved").addOnCompleteListener(new OnCompleteListener<Void>() {
                                             @Override
-                                            public void onClick(View v) {
-                                                dbContactsRef.child(currentUserID).child(requestID).child("contactState")
-                                                        .setValue("Saved").addOnCompleteListener(new OnCompleteListener<Void>() {
-                                                    @Override
-                                                    public void onComplete(@NonNull Task<Void> task)
-                                                    {
-                                                        if (task.isSuccessful())
+                                            public void onComplete(@NonNull Task<Void> task)
+                                            {
+                                                if (task.isSuccessful())
+                                                {
+                                                    dbContactsRef.child(requestID).child(currentUserID).child("contactState")
+                                                            .setValue("Saved").addOnCompleteListener(new OnCompleteListener<Void>() {
+                                                        @Override
+                                                        public void onComplete(@NonNull Task<Void> task)
                                                         {
-                                                            dbContactsRef.child(requestID).child(currentUserID).child("contactState")
-                                                                    .setValue("Saved").addOnCompleteListener(new OnCompleteListener<Void>() {
-                                                                @Override
-                                                                public void onComplete(@NonNull Task<Void> task)
-                                                                {
-                                                                    if (task.isSuccessful())
-                                                                    {
-                                                                        dbRequestsRef.child(currentUserID).child(requestID)
-                                                                                .removeValue()
-                                                                                .addOnCompleteListener(new OnCompleteListener<Void>() {
-                                                                                    @Override
-                                                                                    public void onComplete(@NonNull Task<Void> task)
-                                                                                    {
-                                                                                        if (task.isSuccessful())
-                                                                                        {
-                                                                                            dbRequestsRef.child(requestID).child(currentUserID)
-                                                                                                    .removeValue()
-                                                                                                    .addOnCompleteListener(new OnCompleteListener<Void>() {
-                                                                                                        @Override
-                                                                                                        public void onComplete(@NonNull Task<Void> task)
-                                                                                                        {
-                                                                                                            if (task.isSuccessful())
-                                                                                                            {
-                                                                                                                Toast.makeText(getContext(), "Contact Saved", Toast.LENGTH_SHORT).show();
-                                                                                                            }
-                                                                                                        }
-                                                                                                    });
-                                                                                        }
-                                                                                    }
-                                                                                });
-                                                                    }
-                                                                }
-                                                            });
-                                                        }
-                                                    }
-                                                });
-                                            }
-                                        });
-
-
-                                        holder.rejectButton.setOnClickListener(new View.OnClickListener() {
-                                            @Override
-                                            public void onClick(View v) {
-                                                dbRequestsRef.child(currentUserID).child(requestID)
-                                                        .removeValue()
-                                                        .addOnCompleteListener(new OnCompleteListener<Void>() {
-                                                            @Override
-                                                            public void onComplete(@NonNull Task<Void> task)
+                                                            if (task.isSuccessful())
                                                             {
-                                                                if (task.isSuccessful())
-                                                                {
-                                                                    dbRequestsRef.child(requestID).child(currentUserID)
-                                                                            .removeValue()
-                                                                            .addOnCompleteListener(new OnCompleteListener<Void>() {
-                                                                                @Override
-                                                                                public void onComplete(@NonNull Task<Void> task)
+                                                                dbRequestsRef.child(currentUserID).child(requestID)
+                                                                        .removeValue()
+                                                                        .addOnCompleteListener(new OnCompleteListener<Void>() {
+                                                                            @Override
+                                                                            public void onComplete(@NonNull Task<Void> task)
+                                                                            {
+                                                                                if (task.isSuccessful())
                                                                                 {
-                                                                                    if (task.isSuccessful())
-                                                                                    {
-                                                                                        Toast.makeText(getContext(), "Request Rejected", Toast.LENGTH_SHORT).show();
-                                                                                    }
+                                                                                    dbRequestsRef.child(requestID).child(currentUserID)
+                                                                                            .removeValue()
+                                                                                            .addOnCompleteListener(new OnCompleteListener<Void>() {
+                                                                                                @Override
+                                                                                                public void onComplete(@NonNull Task<Void> task)
+                                                                                                {
+                                                                                                    if (task.isSuccessful())
+                                                                                                    {
+                                                                                                        ContactSummaries.seed(currentUserID, requestID);
+                                                                                                        Toast.makeText(getContext(), "Contact Saved", Toast.LENGTH_SHORT).show();
+                                                                                                    }
+                                                                                                }
+                                                                                            });
                                                                                 }
-                                                                            });
-                                                                }
+                                                                            }
+                                                                        });
                                                             }
-                                                        });
+                                                        }
+                                                    });
+                                                }
                                             }
                                         });
-
                                     }
+                                });
 
-                                    @Override
-                                    public void onCancelled(DatabaseError databaseError) {
 
+                                holder.rejectButton.setOnClickListener(new View.OnClickListener() {
+                                    @Override
+                                    public void onClick(View v) {
+                                        dbRequestsRef.child(currentUserID).child(requestID)
+                                                .removeValue()
+                                                .addOnCompleteListener(new OnCompleteListener<Void>() {
+                                                    @Override
+                                                    public void onComplete(@NonNull Task<Void> task)
+                                                    {
+                                                        if (task.isSuccessful())
+                                                        {
+                                                            dbRequestsRef.child(requestID).child(currentUserID)
+                                                                    .removeValue()
+                                                                    .addOnCompleteListener(new OnCompleteListener<Void>() {
+                                                                        @Override
+                                                                        public void onComplete(@NonNull Task<Void> task)
+                                                                        {
+                                                                            if (task.isSuccessful())
+                                                                            {
+                                                                                Toast.makeText(getContext(), "Request Rejected", Toast.LENGTH_SHORT).show();
+                                                                            }
+                                                                        }
+                                                                    });
+                                                        }
+                                                    }
+                                                });
                                     }
                                 });
                             }
@@ -230,41 +222,12 @@ public class RequestsDialogFrag extends DialogFragment {
 
                                 holder.rejectButton.setVisibility(View.GONE);
 
-                                dbUsersRef.child(requestID).addListenerForSingleValueEvent(new ValueEventListener() {
-                                    /**
-                                     * Overrides the onDataChange for the requests
-                                     * @param dataSnapshot to be watched from the database
-                                     */
-                                    @Override
-                                    public void onDataChange(final DataSnapshot dataSnapshot)
-                                    {
-                                        if (dataSnapshot.hasChild("imageUrl"))
-                                        {
-                                            final String requestProfileImageUrl = dataSnapshot.child("imageUrl").getValue(String.class);
-
-                                            if(TextUtils.isEmpty(requestProfileImageUrl) || requestProfileImageUrl.equals("DEFAULT")){
-                                                holder.profileImageView.setImageResource(R.drawable.default_profile_image);
-                                            }
-                                            else {
-                                                Picasso.get().load(requestProfileImageUrl).placeholder(R.drawable.default_profile_image).into(holder.profileImageView);
-                                            }
-                                        }
-
-                                        holder.displayNameTextView.setText(dataSnapshot.child("displayName").getValue().toString());
-
-                                        holder.itemView.setOnClickListener(new View.OnClickListener() {
-                                            @Override
-                                            public void onClick(View v) {
-                                                Intent profileIntent = new Intent(getContext(), ProfileActivity.class);
-                                                profileIntent.putExtra("contactID", dataSnapshot.getKey());
-                                                startActivity(profileIntent);
-                                            }
-                                        });
-                                    }
-
+                                holder.itemView.setOnClickListener(new View.OnClickListener() {
                                     @Override
-                                    public void onCancelled(DatabaseError databaseError) {
-
+                                    public void onClick(View v) {
+                                        Intent profileIntent = new Intent(getContext(), ProfileActivity.class);
+                                        profileIntent.putExtra("contactID", requestID);
+                                        startActivity(profileIntent);
                                     }
                                 });
                             }
@@ -278,6 +241,19 @@ public class RequestsDialogFrag extends DialogFragment {
                 });
             }
 
+            /**
+             * Overrides the onViewRecycled to stop listening to the other user's profile
+             * @param holder that is being recycled
+             */
+            @Override
+            public void onViewRecycled(@NonNull RequestViewHolder holder) {
+                super.onViewRecycled(holder);
+                if (holder.profileSubscription != null) {
+                    holder.profileSubscription.cancel();
+                    holder.profileSubscription = null;
+                }
+            }
+
             /**
              * Overrides that RequestViewHolder that adds the layout to each item
              * @param parent that the contact is added to
@@ -320,6 +296,7 @@ public class RequestsDialogFrag extends DialogFragment {
         TextView displayNameTextView;
         CircularImageView profileImageView;
         Button acceptButton, rejectButton;
+        UserProfileCache.Subscription profileSubscription;
 
         /**
          * sets up the views on the layout
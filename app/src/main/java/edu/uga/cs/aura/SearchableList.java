@@ -0,0 +1,347 @@
+/**
+ * @author Jett Thistle
+ * @author Kirtana Nidamarti
+ */
+
+package edu.uga.cs.aura;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.view.ViewGroup;
+import android.widget.EditText;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.firebase.ui.database.FirebaseRecyclerAdapter;
+import com.firebase.ui.database.FirebaseRecyclerOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A RecyclerView with a search bar that shows either the results of a database query or a list
+ * of items, like ones found on the device or loaded by a pager, through the same two adapters
+ * for as long as the screen lives.
+ *
+ * A new query replaces the old one with updateOptions, which stops the old query's listener,
+ * and showing items stops the query's listener until a query is shown again. Both adapters
+ * create the same view holders and are swapped without clearing the RecyclerView's pool, so
+ * rows are reused across searches. Subclasses create and bind the rows and decide what to
+ * show in onSearch.
+ *
+ * @param <T> the model of a row
+ * @param <VH> the view holder of a row
+ */
+public abstract class SearchableList<T, VH extends RecyclerView.ViewHolder> {
+
+    private final RecyclerView recyclerView;
+    private final long debounceMs;
+    private final FirebaseRecyclerAdapter<T, VH> queryAdapter;
+    private final ItemsAdapter itemsAdapter = new ItemsAdapter();
+
+    private final Handler searchHandler = new Handler(Looper.getMainLooper());
+    private Runnable pendingSearch;
+    private String currentSearch = "";
+    private boolean started;
+
+    /**
+     * Constructor for a list that only shows items, it starts empty
+     * @param recyclerView that shows the rows
+     * @param debounceMs how long the user has to stop typing before onSearch is called
+     */
+    public SearchableList(RecyclerView recyclerView, long debounceMs) {
+        this.recyclerView = recyclerView;
+        this.debounceMs = debounceMs;
+
+        queryAdapter = null;
+        recyclerView.setAdapter(itemsAdapter);
+    }
+
+    /**
+     * Constructor for the list, it shows the results of the first query
+     * @param recyclerView that shows the rows
+     * @param options of the first query
+     * @param debounceMs how long the user has to stop typing before onSearch is called
+     */
+    public SearchableList(RecyclerView recyclerView, FirebaseRecyclerOptions<T> options, long debounceMs) {
+        this.recyclerView = recyclerView;
+        this.debounceMs = debounceMs;
+
+        queryAdapter = new FirebaseRecyclerAdapter<T, VH>(options) {
+            /**
+             * Overrides the onCreateViewHolder to create the subclass's row
+             * @param parent that the row is put into
+             * @param viewType
+             * @return the view holder
+             */
+            @NonNull
+            @Override
+            public VH onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+                return createViewHolder(parent);
+            }
+
+            /**
+             * Overrides the onBindViewHolder to bind the query result at the position
+             * @param holder of the row
+             * @param position of the result
+             * @param model the result
+             */
+            @Override
+            protected void onBindViewHolder(@NonNull VH holder, int position, @NonNull T model) {
+                bindViewHolder(holder, getRef(position).getKey(), model);
+            }
+        };
+
+        recyclerView.setAdapter(queryAdapter);
+    }
+
+    /**
+     * Calls onSearch whenever the user stops typing in a search bar
+     * @param searchBar to watch
+     */
+    public void attachSearchBar(EditText searchBar) {
+        searchBar.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+
+            }
+
+            /**
+             * Searches once the user stops typing
+             * @param s what the user typed
+             */
+            @Override
+            public void afterTextChanged(Editable s) {
+                scheduleSearch(s.toString().trim());
+            }
+        });
+    }
+
+    /**
+     * Starts listening to the query being shown, call it from onStart
+     */
+    public void start() {
+        started = true;
+        if (queryAdapter != null && recyclerView.getAdapter() == queryAdapter) {
+            queryAdapter.startListening();
+        }
+    }
+
+    /**
+     * Stops listening and drops a search that has not run yet, call it from onStop
+     */
+    public void stop() {
+        started = false;
+        if (pendingSearch != null) {
+            searchHandler.removeCallbacks(pendingSearch);
+            pendingSearch = null;
+        }
+        if (queryAdapter != null) {
+            queryAdapter.stopListening();
+        }
+    }
+
+    /**
+     * gets the search that was last passed to onSearch
+     * @return the search, empty if there is none
+     */
+    public String getCurrentSearch() {
+        return currentSearch;
+    }
+
+    /**
+     * gets the number of rows being shown
+     * @return the number of query results or items
+     */
+    public int getItemCount() {
+        return queryAdapter != null && recyclerView.getAdapter() == queryAdapter
+                ? queryAdapter.getItemCount() : itemsAdapter.getItemCount();
+    }
+
+    /**
+     * gets the model of a row being shown
+     * @param position of the row
+     * @return the query result or item at the position
+     */
+    public T getItem(int position) {
+        return queryAdapter != null && recyclerView.getAdapter() == queryAdapter
+                ? queryAdapter.getItem(position) : itemsAdapter.items.get(position);
+    }
+
+    /**
+     * Shows the results of a query, replacing the query or items shown before, only for lists
+     * that were created with a query
+     * @param options of the query
+     */
+    public void showQuery(FirebaseRecyclerOptions<T> options) {
+        queryAdapter.updateOptions(options);
+        showQueryAdapter();
+    }
+
+    /**
+     * Shows the results of the current query again after items were shown
+     */
+    public void showQueryAdapter() {
+        if (queryAdapter != null && recyclerView.getAdapter() != queryAdapter) {
+            recyclerView.swapAdapter(queryAdapter, true);
+            if (started) {
+                queryAdapter.startListening();
+            }
+        }
+    }
+
+    /**
+     * Shows items found on the device, the query stops listening until it is shown again
+     * @param keys of the items
+     * @param items to show, in the same order as their keys, changes to the lists are shown
+     *              once the list is told with the notify methods
+     */
+    public void showItems(List<String> keys, List<T> items) {
+        itemsAdapter.setItems(keys, items);
+        if (recyclerView.getAdapter() != itemsAdapter) {
+            if (queryAdapter != null) {
+                queryAdapter.stopListening();
+            }
+            recyclerView.swapAdapter(itemsAdapter, true);
+        }
+    }
+
+    /**
+     * Tells the list that items were inserted, if those items are being shown
+     * @param items that were passed to showItems
+     * @param position of the first inserted item
+     * @param count of inserted items
+     */
+    public void notifyItemsInserted(List<T> items, int position, int count) {
+        if (isShowing(items)) {
+            itemsAdapter.notifyItemRangeInserted(position, count);
+        }
+    }
+
+    /**
+     * Tells the list that an item changed, if that item is being shown
+     * @param items that were passed to showItems
+     * @param position of the item
+     */
+    public void notifyItemChanged(List<T> items, int position) {
+        if (isShowing(items)) {
+            itemsAdapter.notifyItemChanged(position);
+        }
+    }
+
+    /**
+     * Tells the list that an item was removed, if that item was being shown
+     * @param items that were passed to showItems
+     * @param position the item was at
+     */
+    public void notifyItemRemoved(List<T> items, int position) {
+        if (isShowing(items)) {
+            itemsAdapter.notifyItemRemoved(position);
+        }
+    }
+
+    /**
+     * Tells the list that the items changed completely, if they are being shown
+     * @param items that were passed to showItems
+     */
+    public void notifyItemsChanged(List<T> items) {
+        if (isShowing(items)) {
+            itemsAdapter.notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * checks if a list of items is the one being shown
+     * @param items that were passed to showItems
+     * @return true if the rows show that list
+     */
+    private boolean isShowing(List<T> items) {
+        return recyclerView.getAdapter() == itemsAdapter && itemsAdapter.items == items;
+    }
+
+    /**
+     * Creates the view holder of a row
+     * @param parent that the row is put into
+     * @return the view holder
+     */
+    protected abstract VH createViewHolder(@NonNull ViewGroup parent);
+
+    /**
+     * Binds a model to a row
+     * @param holder of the row
+     * @param key of the model in the database
+     * @param model to bind
+     */
+    protected abstract void bindViewHolder(@NonNull VH holder, String key, @NonNull T model);
+
+    /**
+     * Called when the user stops typing a new search, shows its results with showQuery or showItems
+     * @param search what the user typed, trimmed
+     */
+    protected abstract void onSearch(String search);
+
+    /**
+     * Calls onSearch after the debounce, replacing a search that has not run yet
+     * @param search what the user typed
+     */
+    private void scheduleSearch(final String search) {
+        if (pendingSearch != null) {
+            searchHandler.removeCallbacks(pendingSearch);
+        }
+
+        pendingSearch = new Runnable() {
+            @Override
+            public void run() {
+                pendingSearch = null;
+                if (!search.equals(currentSearch)) {
+                    currentSearch = search;
+                    onSearch(search);
+                }
+            }
+        };
+        searchHandler.postDelayed(pendingSearch, debounceMs);
+    }
+
+    /**
+     * Shows a list of items with the subclass's rows
+     */
+    private class ItemsAdapter extends RecyclerView.Adapter<VH> {
+        private List<String> keys = new ArrayList<String>();
+        private List<T> items = new ArrayList<T>();
+
+        /**
+         * replaces the items that are shown
+         * @param keys of the items
+         * @param items to show
+         */
+        void setItems(List<String> keys, List<T> items) {
+            this.keys = keys;
+            this.items = items;
+            notifyDataSetChanged();
+        }
+
+        @NonNull
+        @Override
+        public VH onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            return createViewHolder(parent);
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull VH holder, int position) {
+            bindViewHolder(holder, keys.get(position), items.get(position));
+        }
+
+        @Override
+        public int getItemCount() {
+            return items.size();
+        }
+    }
+}
@@ -49,6 +49,9 @@ import com.squareup.picasso.Picasso;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * creates the Settings Activity
@@ -208,9 +211,13 @@ public class SettingsActivity extends AppCompatActivity {
             return;
         }
 
-        dbCurrentUserRef.child("uid").setValue(fbUser.getUid());
-        dbCurrentUserRef.child("displayName").setValue(displayName);
-        dbCurrentUserRef.child("imageUrl").setValue("DEFAULT");
+        //also updates the copies in the user's contacts' lists
+        Map<String, Object> profileUpdates = new HashMap<>();
+        profileUpdates.put("uid", fbUser.getUid());
+        profileUpdates.put("displayName", displayName);
+        profileUpdates.put("imageUrl", "DEFAULT");
+        ContactSummaries.publish(fbUser.getUid(), profileUpdates);
+        UserSearchIndex.update(fbUser.getUid(), displayName);
 
         profileBitmap = ((BitmapDrawable)profilePic.getDrawable()).getBitmap();
         if(profileBitmap != ((BitmapDrawable)getResources().getDrawable(R.drawable.default_profile_image)).getBitmap()) {
@@ -236,7 +243,8 @@ public class SettingsActivity extends AppCompatActivity {
                     if (task.isSuccessful()) {
                         Toast.makeText(SettingsActivity.this, "Photo Upload Succeeded :)", Toast.LENGTH_SHORT).show();
                         Uri imgDownloadUri = task.getResult();
-                        dbCurrentUserRef.child("imageUrl").setValue(imgDownloadUri.toString());
+                        ContactSummaries.publish(fbUser.getUid(),
+                                Collections.<String, Object>singletonMap("imageUrl", imgDownloadUri.toString()));
                     }
                 }
             });
@@ -0,0 +1,243 @@
+/**
+ * @author Jett Thistle
+ * @author Kirtana Nidamarti
+ */
+
+package edu.uga.cs.aura;
+
+import android.util.Log;
+
+import com.ibm.cloud.sdk.core.security.IamAuthenticator;
+import com.ibm.watson.tone_analyzer.v3.ToneAnalyzer;
+import com.ibm.watson.tone_analyzer.v3.model.SentenceAnalysis;
+import com.ibm.watson.tone_analyzer.v3.model.ToneAnalysis;
+import com.ibm.watson.tone_analyzer.v3.model.ToneOptions;
+import com.ibm.watson.tone_analyzer.v3.model.ToneScore;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared client for IBM's Tone Analyzer.
+ *
+ * There is one authenticator and one ToneAnalyzer for the whole app, so the IAM token is only
+ * requested when it expires and every request goes through the same HTTP client and its
+ * connection pool. While a screen that sends messages is started, the token is fetched in the
+ * background right away and again every TOKEN_REFRESH_MS, so it never expires while the user
+ * can send and a send never waits for it.
+ */
+public class ToneAnalysisService {
+
+    //kept in AuraEngine, which has no Android or Watson dependencies
+    public static final int TONE_ANGER = AuraEngine.TONE_ANGER;
+    public static final int TONE_JOY = AuraEngine.TONE_JOY;
+    public static final int TONE_SADNESS = AuraEngine.TONE_SADNESS;
+    public static final int TONE_NONE = AuraEngine.TONE_NONE;
+
+    private static final String TAG = "ToneAnalysisService";
+    private static final String API_KEY = "REPLACE_WITH_API"; //I removed our api key for safety
+    private static final String URL = "https://gateway-wdc.watsonplatform.net/tone-analyzer/api";
+    private static final String VERSION = "2017-09-21";
+    private static final double MIN_TONE_SCORE = .7;
+
+    //IAM tokens last an hour and the authenticator renews them once 80% of that has passed
+    private static final long TOKEN_REFRESH_MS = TimeUnit.MINUTES.toMillis(50);
+
+    private static ToneAnalysisService instance;
+
+    private final IamAuthenticator authenticator;
+    private final ToneAnalyzer toneAnalyzer;
+    private final ScheduledExecutorService warmUpExecutor = Executors.newSingleThreadScheduledExecutor();
+    private ScheduledFuture<?> scheduledWarmUp;
+    private int warmScreens;
+
+    /**
+     * Constructor that sets up the shared client
+     */
+    private ToneAnalysisService() {
+        authenticator = new IamAuthenticator(API_KEY);
+        toneAnalyzer = new ToneAnalyzer(VERSION, authenticator);
+        toneAnalyzer.setServiceUrl(URL);
+    }
+
+    /**
+     * gets the service shared by the whole app
+     * @return the service
+     */
+    public static synchronized ToneAnalysisService getInstance() {
+        if (instance == null) {
+            instance = new ToneAnalysisService();
+        }
+        return instance;
+    }
+
+    /**
+     * Keeps a fresh IAM token while a screen that sends messages is started, call it from the
+     * screen's onStart and call coolDown from its onStop
+     */
+    public synchronized void warmUp() {
+        warmScreens++;
+        if (scheduledWarmUp == null) {
+            scheduledWarmUp = warmUpExecutor.scheduleWithFixedDelay(getToken, 0, TOKEN_REFRESH_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops keeping the token fresh once no screen that sends messages is started
+     */
+    public synchronized void coolDown() {
+        if (warmScreens > 0) {
+            warmScreens--;
+        }
+        if (warmScreens == 0 && scheduledWarmUp != null) {
+            scheduledWarmUp.cancel(false);
+            scheduledWarmUp = null;
+        }
+    }
+
+    /**
+     * Gets the token, the authenticator only asks for a new one when it is close to expiring
+     */
+    private final Runnable getToken = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                authenticator.getToken();
+            }
+            catch (RuntimeException e) {
+                Log.d(TAG, "could not get IAM token", e);
+            }
+        }
+    };
+
+    /**
+     * Sends the text to the API to be analyzed, blocks until the API answers
+     * @param text to be analyzed
+     * @return TONE_ANGER, TONE_JOY, TONE_SADNESS or TONE_NONE if no tone was strong enough
+     */
+    public int analyzeTone(String text) {
+        ToneOptions toneOptions = new ToneOptions.Builder()
+                .tones(Arrays.asList(ToneOptions.Tone.EMOTION))
+                .sentences(false)
+                .text(text)
+                .build();
+
+        ToneAnalysis toneAnalysis = toneAnalyzer.tone(toneOptions).execute().getResult();
+        return toneFromScores(toneAnalysis.getDocumentTone().getTones());
+    }
+
+    /**
+     * Analyzes several messages with one request. The messages are sent as one text with each
+     * message as its own sentence, and the tone of every sentence is mapped back to the message
+     * it came from
+     * @param texts the messages to be analyzed
+     * @return the tone of each message, in the same order as texts
+     */
+    public int[] analyzeTones(List<String> texts) {
+        int[] tones = new int[texts.size()];
+        if (texts.size() == 1) {
+            tones[0] = analyzeTone(texts.get(0));
+            return tones;
+        }
+
+        //remember where each message starts in the combined text
+        StringBuilder combinedText = new StringBuilder();
+        int[] messageStarts = new int[texts.size()];
+        for (int i = 0; i < texts.size(); i++) {
+            String text = texts.get(i).trim();
+            messageStarts[i] = combinedText.length();
+            combinedText.append(text);
+            if (!text.endsWith(".") && !text.endsWith("!") && !text.endsWith("?")) {
+                combinedText.append('.');
+            }
+            combinedText.append('\n');
+        }
+
+        ToneOptions toneOptions = new ToneOptions.Builder()
+                .tones(Arrays.asList(ToneOptions.Tone.EMOTION))
+                .sentences(true)
+                .text(combinedText.toString())
+                .build();
+
+        ToneAnalysis toneAnalysis = toneAnalyzer.tone(toneOptions).execute().getResult();
+        List<SentenceAnalysis> sentences = toneAnalysis.getSentencesTone();
+
+        //the API leaves out sentence tones when it only finds one sentence
+        if (sentences == null || sentences.isEmpty()) {
+            Arrays.fill(tones, toneFromScores(toneAnalysis.getDocumentTone().getTones()));
+            return tones;
+        }
+
+        //keep the strongest sentence tone of each message
+        ToneScore[] strongestScores = new ToneScore[texts.size()];
+        int searchFrom = 0;
+        for (SentenceAnalysis sentence : sentences) {
+            int sentenceStart = combinedText.indexOf(sentence.getText(), searchFrom);
+            if (sentenceStart < 0) {
+                continue;
+            }
+            searchFrom = sentenceStart + sentence.getText().length();
+
+            int message = messageAt(messageStarts, sentenceStart);
+            if (sentence.getTones() == null) {
+                continue;
+            }
+            for (ToneScore toneScore : sentence.getTones()) {
+                if (strongestScores[message] == null || toneScore.getScore() > strongestScores[message].getScore()) {
+                    strongestScores[message] = toneScore;
+                }
+            }
+        }
+
+        for (int i = 0; i < tones.length; i++) {
+            tones[i] = strongestScores[i] == null ? TONE_NONE : toneFromScores(Arrays.asList(strongestScores[i]));
+        }
+        return tones;
+    }
+
+    /**
+     * Finds which message a position in the combined text belongs to
+     * @param messageStarts where each message starts in the combined text
+     * @param position in the combined text
+     * @return index of the message
+     */
+    private static int messageAt(int[] messageStarts, int position) {
+        int message = 0;
+        while (message + 1 < messageStarts.length && messageStarts[message + 1] <= position) {
+            message++;
+        }
+        return message;
+    }
+
+    /**
+     * Picks the tone from the scores the API returned
+     * @param toneScores scores for the text, strongest first
+     * @return TONE_ANGER, TONE_JOY, TONE_SADNESS or TONE_NONE if no tone was strong enough
+     */
+    public static int toneFromScores(List<ToneScore> toneScores) {
+        //if there is no tone found, just return default value
+        if (toneScores == null || toneScores.isEmpty() || toneScores.get(0).getScore() < MIN_TONE_SCORE){
+            return TONE_NONE;
+        }
+
+        switch(toneScores.get(0).getToneId()){
+            case "anger":
+            case "disgust":
+                return TONE_ANGER; //r
+
+            case "joy":
+                return TONE_JOY; //g
+
+            case "sadness":
+            case "fear":
+                return TONE_SADNESS; //b
+
+            default:
+                return TONE_NONE;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/**
+ * @author Jett Thistle
+ * @author Kirtana Nidamarti
+ */
+
+package edu.uga.cs.aura;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Collects messages that are sent close together and analyzes their tones with one request.
+ *
+ * A batch is sent MAX_WAIT_MS after its first message, or as soon as it has MAX_BATCH_SIZE
+ * messages, whichever comes first. Users who send a burst of short messages then make one
+ * API call instead of one per message. Batches are analyzed one at a time on the batcher's
+ * thread, and the next batch fills while one is being analyzed. A message's tone can be waited
+ * for with the Future from submit, or handed to a listener so no thread waits for it.
+ */
+public class ToneBatcher {
+
+    public static final int MAX_BATCH_SIZE = 10;
+    public static final long MAX_WAIT_MS = 400;
+
+    private static final String TAG = "ToneBatcher";
+
+    private static ToneBatcher instance;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private final List<PendingTone> pendingTones = new ArrayList<PendingTone>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    /**
+     * Listener for the tone of a message in a batch
+     */
+    public interface OnBatchToneListener {
+        /**
+         * called on the batcher's thread once the batch was analyzed
+         * @param tone of the message
+         */
+        void onTone(int tone);
+
+        /**
+         * called on the batcher's thread if the batch could not be analyzed
+         * @param failure why
+         */
+        void onFailure(Exception failure);
+    }
+
+    /**
+     * Constructor for the batcher
+     */
+    private ToneBatcher() {
+
+    }
+
+    /**
+     * gets the batcher shared by the whole app
+     * @return the batcher
+     */
+    public static synchronized ToneBatcher getInstance() {
+        if (instance == null) {
+            instance = new ToneBatcher();
+        }
+        return instance;
+    }
+
+    /**
+     * Adds a message to the current batch
+     * @param text to be analyzed
+     * @return the tone of the message once its batch has been analyzed
+     */
+    public Future<Integer> submit(String text) {
+        PendingTone pendingTone = new PendingTone(text, null);
+        add(pendingTone);
+        return pendingTone;
+    }
+
+    /**
+     * Adds a message to the current batch without waiting for it
+     * @param text to be analyzed
+     * @param listener told about the tone of the message once its batch has been analyzed
+     */
+    public void submit(String text, OnBatchToneListener listener) {
+        add(new PendingTone(text, listener));
+    }
+
+    /**
+     * Adds a message to the current batch, and sends the batch if it is full
+     * @param pendingTone the message
+     */
+    private void add(PendingTone pendingTone) {
+        synchronized (pendingTones) {
+            pendingTones.add(pendingTone);
+
+            if (pendingTones.size() >= MAX_BATCH_SIZE) {
+                if (scheduledFlush != null) {
+                    scheduledFlush.cancel(false);
+                    scheduledFlush = null;
+                }
+                executor.execute(flush);
+            }
+            else if (scheduledFlush == null) {
+                scheduledFlush = executor.schedule(flush, MAX_WAIT_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Analyzes every message in the current batch
+     */
+    private final Runnable flush = new Runnable() {
+        @Override
+        public void run() {
+            List<PendingTone> batch;
+            synchronized (pendingTones) {
+                scheduledFlush = null;
+                if (pendingTones.isEmpty()) {
+                    return;
+                }
+                batch = new ArrayList<PendingTone>(pendingTones.subList(0, Math.min(MAX_BATCH_SIZE, pendingTones.size())));
+                pendingTones.subList(0, batch.size()).clear();
+
+                //more messages came in while this batch was full
+                if (!pendingTones.isEmpty()) {
+                    scheduledFlush = executor.schedule(this, MAX_WAIT_MS, TimeUnit.MILLISECONDS);
+                }
+            }
+
+            List<String> texts = new ArrayList<String>();
+            for (PendingTone pendingTone : batch) {
+                texts.add(pendingTone.text);
+            }
+
+            int[] tones;
+            try {
+                tones = ToneAnalysisService.getInstance().analyzeTones(texts);
+            }
+            catch (RuntimeException e) {
+                //fail the futures so a failure is not mistaken for a message with no tone
+                Log.d(TAG, "could not analyze batch of " + batch.size(), e);
+                for (PendingTone pendingTone : batch) {
+                    pendingTone.fail(e);
+                }
+                return;
+            }
+
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).complete(tones[i]);
+            }
+        }
+    };
+
+    /**
+     * a message waiting for its batch to be analyzed
+     */
+    private static class PendingTone implements Future<Integer> {
+        private final String text;
+        private final OnBatchToneListener listener;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile int tone;
+        private volatile Exception failure;
+
+        PendingTone(String text, OnBatchToneListener listener) {
+            this.text = text;
+            this.listener = listener;
+        }
+
+        void complete(int tone) {
+            this.tone = tone;
+            done.countDown();
+            if (listener != null) {
+                listener.onTone(tone);
+            }
+        }
+
+        void fail(Exception failure) {
+            this.failure = failure;
+            done.countDown();
+            if (listener != null) {
+                listener.onFailure(failure);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        @Override
+        public Integer get() throws InterruptedException, ExecutionException {
+            done.await();
+            return result();
+        }
+
+        @Override
+        public Integer get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            if (!done.await(timeout, unit)) {
+                throw new TimeoutException();
+            }
+            return result();
+        }
+
+        private Integer result() throws ExecutionException {
+            if (failure != null) {
+                throw new ExecutionException(failure);
+            }
+            return tone;
+        }
+    }
+}
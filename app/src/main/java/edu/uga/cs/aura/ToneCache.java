@@ -0,0 +1,290 @@
+/**
+ * @author Jett Thistle
+ * @author Kirtana Nidamarti
+ */
+
+package edu.uga.cs.aura;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the tones of short messages, so repeated messages like "lol", "ok" or "thanks!"
+ * do not each need a call to the tone API.
+ *
+ * Texts are normalized before they are looked up, the least recently used tones are dropped
+ * past MAX_ENTRIES and tones expire after TTL_MS. The cache is saved to a file so it survives
+ * app restarts, and it counts hits and misses so its size can be tuned.
+ */
+public class ToneCache {
+
+    public static final int MAX_ENTRIES = 500;
+    public static final int MAX_TEXT_LENGTH = 64;
+    public static final long TTL_MS = TimeUnit.DAYS.toMillis(7);
+
+    private static final String TAG = "ToneCache";
+    private static final String FILE_NAME = "tone_cache";
+    private static final int FILE_VERSION = 1;
+
+    private static ToneCache instance;
+
+    //access ordered, so iteration starts at the least recently used tone
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    //the file is read and written off the main thread
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private File file;
+    private boolean loading;
+    private boolean dirty;
+    private long hits, misses;
+
+    /**
+     * a cached tone and when it expires
+     */
+    private static class Entry {
+        final int tone;
+        final long expiresAt;
+
+        Entry(int tone, long expiresAt) {
+            this.tone = tone;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Constructor for the cache
+     */
+    private ToneCache() {
+
+    }
+
+    /**
+     * gets the cache shared by the whole app
+     * @return the cache
+     */
+    public static synchronized ToneCache getInstance() {
+        if (instance == null) {
+            instance = new ToneCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Normalizes a message so small differences in case, spacing or repeated letters share a tone
+     * @param text of the message
+     * @return the cache key, or null if the message is too long to be worth caching
+     */
+    public static String normalize(String text) {
+        String trimmed = text.trim().toLowerCase();
+        if (trimmed.length() > MAX_TEXT_LENGTH) {
+            return null;
+        }
+
+        StringBuilder key = new StringBuilder(trimmed.length());
+        char previous = 0;
+        int runLength = 0;
+        for (int i = 0; i < trimmed.length(); i++) {
+            char c = Character.isWhitespace(trimmed.charAt(i)) ? ' ' : trimmed.charAt(i);
+            runLength = c == previous ? runLength + 1 : 1;
+            previous = c;
+
+            //"lolll" has the same key as "loll" and "lol   l" the same as "lol l", spaces never repeat
+            if (runLength <= (c == ' ' ? 1 : 2)) {
+                key.append(c);
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Reads the saved cache in the background, does nothing if it was already read. Lookups
+     * before it is read are misses
+     * @param context used to find the app's files
+     */
+    public synchronized void load(Context context) {
+        if (loading) {
+            return;
+        }
+        loading = true;
+
+        //runs before any save, the executor has one thread
+        final Context appContext = context.getApplicationContext();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                read(new File(appContext.getFilesDir(), FILE_NAME));
+            }
+        });
+    }
+
+    /**
+     * Reads the cache from its file, tones put before it was read are kept. The file is read
+     * without holding the lock, so lookups are not blocked on it
+     * @param cacheFile where the cache is saved
+     */
+    private void read(File cacheFile) {
+        synchronized (this) {
+            file = cacheFile;
+        }
+        if (!cacheFile.exists()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        Map<String, Entry> saved = new LinkedHashMap<String, Entry>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if (in.readInt() != FILE_VERSION) {
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                int tone = in.readInt();
+                long expiresAt = in.readLong();
+                if (expiresAt > now) {
+                    saved.put(key, new Entry(tone, expiresAt));
+                }
+            }
+        }
+        catch (IOException e) {
+            Log.d(TAG, "could not read tone cache", e);
+            return;
+        }
+
+        synchronized (this) {
+            for (Map.Entry<String, Entry> entry : saved.entrySet()) {
+                if (!entries.containsKey(entry.getKey())) {
+                    entries.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the cache to its file in the background, if it changed since it was last saved
+     */
+    public void save() {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        });
+    }
+
+    /**
+     * Writes the cache to its file, only the copy is made while holding the lock
+     */
+    private void write() {
+        File cacheFile;
+        Map<String, Entry> snapshot;
+        synchronized (this) {
+            if (file == null || !dirty) {
+                return;
+            }
+            cacheFile = file;
+            snapshot = new LinkedHashMap<String, Entry>(entries);
+            dirty = false;
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(cacheFile)))) {
+            out.writeInt(FILE_VERSION);
+            out.writeInt(snapshot.size());
+            for (Map.Entry<String, Entry> entry : snapshot.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().tone);
+                out.writeLong(entry.getValue().expiresAt);
+            }
+        }
+        catch (IOException e) {
+            Log.d(TAG, "could not save tone cache", e);
+            synchronized (this) {
+                dirty = true;
+            }
+        }
+
+        Log.d(TAG, "hit rate " + getHitRate() + " (" + getHits() + " hits, " + getMisses() + " misses)");
+    }
+
+    /**
+     * Looks up the tone of a message
+     * @param text of the message
+     * @return the tone, or null if it is not cached
+     */
+    public synchronized Integer get(String text) {
+        String key = normalize(text);
+        Entry entry = key == null ? null : entries.get(key);
+
+        if (entry != null && entry.expiresAt <= System.currentTimeMillis()) {
+            entries.remove(key);
+            dirty = true;
+            entry = null;
+        }
+
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.tone;
+    }
+
+    /**
+     * Remembers the tone of a message
+     * @param text of the message
+     * @param tone of the message
+     */
+    public synchronized void put(String text, int tone) {
+        String key = normalize(text);
+        if (key == null) {
+            return;
+        }
+        entries.put(key, new Entry(tone, System.currentTimeMillis() + TTL_MS));
+        dirty = true;
+    }
+
+    /**
+     * gets the number of lookups that found a tone
+     * @return the number of hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * gets the number of lookups that did not find a tone
+     * @return the number of misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * gets the share of lookups that found a tone
+     * @return from 0 to 1, 0 if nothing was looked up yet
+     */
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * @author Jett Thistle
+ * @author Kirtana Nidamarti
+ */
+
+package edu.uga.cs.aura;
+
+/**
+ * Something that can find the tone of a message
+ */
+public interface ToneClassifier {
+
+    /**
+     * Finds the tone of a message, may block so never call it on the main thread
+     * @param text of the message
+     * @return the tone and how sure the classifier is about it
+     */
+    Result classify(String text);
+
+    /**
+     * the tone of a message and how sure the classifier is about it
+     */
+    class Result {
+        private final int tone;
+        private final double confidence;
+
+        /**
+         * Constructor for the result
+         * @param tone TONE_ANGER, TONE_JOY, TONE_SADNESS or TONE_NONE from ToneAnalysisService
+         * @param confidence from 0 (a guess) to 1 (certain)
+         */
+        public Result(int tone, double confidence) {
+            this.tone = tone;
+            this.confidence = confidence;
+        }
+
+        /**
+         * gets the tone
+         * @return TONE_ANGER, TONE_JOY, TONE_SADNESS or TONE_NONE from ToneAnalysisService
+         */
+        public int getTone() {
+            return tone;
+        }
+
+        /**
+         * gets how sure the classifier is about the tone
+         * @return from 0 (a guess) to 1 (certain)
+         */
+        public double getConfidence() {
+            return confidence;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/**
+ * @author Jett Thistle
+ * @author Kirtana Nidamarti
+ */
+
+package edu.uga.cs.aura;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Finds the tones of sent messages in the background.
+ *
+ * One worker runs the on-device steps of the classifier, the lexicon and the cache, and hands
+ * messages that need the API to the ToneBatcher with a listener, so no thread waits for a
+ * message's batch and a burst of sends shares one request. At most MAX_PENDING messages wait for
+ * a tone at once, enough for MAX_CONCURRENT_BATCHES full batches, one being analyzed while the
+ * next one fills, and MAX_QUEUED more. Every request gets the on-device tone instead when it is
+ * not done after TIMEOUT_MS, when too many are pending or when its activity cancels it, so a
+ * message never stays pending because of a slow API. Listeners are always called on the main
+ * thread. Only submit and cancel from the main thread.
+ */
+public class ToneWorkQueue {
+
+    public static final int MAX_CONCURRENT_BATCHES = 2;
+    public static final int MAX_QUEUED = 32;
+    public static final int MAX_PENDING = ToneBatcher.MAX_BATCH_SIZE * MAX_CONCURRENT_BATCHES + MAX_QUEUED;
+    public static final long TIMEOUT_MS = 5000;
+
+    private static final String TAG = "ToneWorkQueue";
+
+    private static ToneWorkQueue instance;
+
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1,
+            30, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(MAX_PENDING));
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final AsyncToneClassifier classifier = FallbackToneClassifier.getDefault();
+    private final ToneClassifier localClassifier = new LexiconToneClassifier();
+
+    private final Map<Object, List<Request>> requestsByOwner = new HashMap<Object, List<Request>>();
+    private int pendingCount;
+
+    /**
+     * Listener for when the tone of a message is found
+     */
+    public interface OnToneListener {
+        /**
+         * called once on the main thread, even if the request timed out or was cancelled
+         * @param tone of the message
+         */
+        void onTone(int tone);
+    }
+
+    /**
+     * a message waiting for its tone
+     */
+    private class Request implements Runnable {
+        private final Object owner;
+        private final String text;
+        private final OnToneListener listener;
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private volatile Future<?> future;
+        private volatile ScheduledFuture<?> timeout;
+
+        Request(Object owner, String text, OnToneListener listener) {
+            this.owner = owner;
+            this.text = text;
+            this.listener = listener;
+        }
+
+        /**
+         * Starts finding the tone on the worker, which does not wait for the API
+         */
+        @Override
+        public void run() {
+            if (finished.get()) {
+                return;
+            }
+
+            classifier.classify(text, new AsyncToneClassifier.OnResultListener() {
+                @Override
+                public void onResult(ToneClassifier.Result result) {
+                    finish(result.getTone());
+                }
+            });
+        }
+
+        /**
+         * Stops waiting for the tone and uses the on-device tone, a tone that comes later is ignored
+         */
+        void finishLocally() {
+            if (future != null) {
+                future.cancel(false);
+            }
+            if (!finished.get()) {
+                finish(localClassifier.classify(text).getTone());
+            }
+        }
+
+        /**
+         * Tells the listener about the tone, only the first call does anything
+         * @param tone of the message
+         */
+        void finish(final int tone) {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    pendingCount--;
+                    List<Request> requests = requestsByOwner.get(owner);
+                    if (requests != null && requests.remove(Request.this) && requests.isEmpty()) {
+                        requestsByOwner.remove(owner);
+                    }
+                    listener.onTone(tone);
+                }
+            });
+        }
+    }
+
+    /**
+     * Constructor for the work queue
+     */
+    private ToneWorkQueue() {
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * gets the work queue shared by the whole app
+     * @return the work queue
+     */
+    public static synchronized ToneWorkQueue getInstance() {
+        if (instance == null) {
+            instance = new ToneWorkQueue();
+        }
+        return instance;
+    }
+
+    /**
+     * Queues a message to have its tone found
+     * @param owner the activity that sent the message, used to cancel its requests
+     * @param text of the message
+     * @param listener told about the tone
+     */
+    public void submit(Object owner, String text, OnToneListener listener) {
+        final Request request = new Request(owner, text, listener);
+
+        List<Request> requests = requestsByOwner.get(owner);
+        if (requests == null) {
+            requests = new ArrayList<Request>();
+            requestsByOwner.put(owner, requests);
+        }
+        requests.add(request);
+        pendingCount++;
+
+        if (pendingCount <= MAX_PENDING) {
+            try {
+                request.future = executor.submit(request);
+            }
+            catch (RejectedExecutionException e) {
+                Log.d(TAG, "worker queue full", e);
+            }
+        }
+        if (request.future == null) {
+            //sent faster than the tones can be found, do not wait on the API for this one
+            Log.d(TAG, "too many pending, using the on-device tone");
+            request.finishLocally();
+            return;
+        }
+
+        request.timeout = timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                request.finishLocally();
+            }
+        }, TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops waiting on the API for every message an activity sent, they get the on-device tone
+     * @param owner the activity that sent the messages
+     */
+    public void cancelAll(Object owner) {
+        List<Request> requests = requestsByOwner.get(owner);
+        if (requests == null) {
+            return;
+        }
+
+        //copy, finishing removes the request from the list
+        for (Request request : new ArrayList<Request>(requests)) {
+            request.finishLocally();
+        }
+    }
+}
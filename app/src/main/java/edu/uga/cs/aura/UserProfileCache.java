@@ -0,0 +1,204 @@
+/**
+ * @author Jett Thistle
+ * @author Kirtana Nidamarti
+ */
+
+package edu.uga.cs.aura;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shared cache of user profiles so every screen that shows a user's name, image or aura reads it
+ * through one listener on Users/<uid> instead of attaching its own listener per row.
+ *
+ * Each uid has at most one live listener, counted by the number of observers. Profiles nobody is
+ * observing stay cached (and listened to) until more than MAX_IDLE_PROFILES are idle, then the
+ * least recently used ones are dropped. Only use it from the main thread.
+ */
+public class UserProfileCache {
+
+    private static final int MAX_IDLE_PROFILES = 100;
+
+    private static UserProfileCache instance;
+
+    private final DatabaseReference dbUsersRef;
+
+    //access ordered, so iteration starts at the least recently used profile
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private int idleCount;
+
+    /**
+     * Listener for when a user's profile is loaded or changes
+     */
+    public interface OnProfileChangedListener {
+        /**
+         * called with the current profile right away if it is cached, then on every change
+         * @param user the user's profile
+         */
+        void onProfileChanged(User user);
+    }
+
+    /**
+     * Handle for one observer, cancel it when the view stops showing the user
+     */
+    public class Subscription {
+        private final String uid;
+        private final OnProfileChangedListener listener;
+        private boolean cancelled;
+
+        private Subscription(String uid, OnProfileChangedListener listener) {
+            this.uid = uid;
+            this.listener = listener;
+        }
+
+        /**
+         * stops the listener from getting updates
+         */
+        public void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                release(this);
+            }
+        }
+    }
+
+    /**
+     * holds the cached profile and the one database listener for a uid
+     */
+    private class Entry {
+        final String uid;
+        final List<Subscription> subscriptions = new ArrayList<Subscription>();
+        final ValueEventListener valueEventListener;
+        User user;
+
+        Entry(final String uid) {
+            this.uid = uid;
+            this.valueEventListener = new ValueEventListener() {
+                /**
+                 * Overrides the onDataChange method to cache the profile and tell the observers
+                 * @param dataSnapshot the user's profile
+                 */
+                @Override
+                public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                    if (!dataSnapshot.exists()) {
+                        return;
+                    }
+
+                    user = dataSnapshot.getValue(User.class);
+                    if (user.getUid() == null) {
+                        user.setUid(uid);
+                    }
+
+                    //copy so an observer can cancel itself while being told
+                    for (Subscription subscription : new ArrayList<Subscription>(subscriptions)) {
+                        if (!subscription.cancelled) {
+                            subscription.listener.onProfileChanged(user);
+                        }
+                    }
+                }
+
+                @Override
+                public void onCancelled(@NonNull DatabaseError databaseError) {
+
+                }
+            };
+        }
+    }
+
+    /**
+     * Constructor for the cache
+     */
+    private UserProfileCache() {
+        dbUsersRef = FirebaseDatabase.getInstance().getReference().child("Users");
+    }
+
+    /**
+     * gets the cache shared by the whole app
+     * @return the cache
+     */
+    public static UserProfileCache getInstance() {
+        if (instance == null) {
+            instance = new UserProfileCache();
+        }
+        return instance;
+    }
+
+    /**
+     * gets a cached profile without listening to it
+     * @param uid of the user
+     * @return the profile, or null if it is not cached
+     */
+    public User get(String uid) {
+        Entry entry = entries.get(uid);
+        return entry == null ? null : entry.user;
+    }
+
+    /**
+     * starts observing a user's profile
+     * @param uid of the user
+     * @param listener told about the profile now (if cached) and on every change
+     * @return the subscription to cancel when the profile is not shown anymore
+     */
+    public Subscription observe(String uid, OnProfileChangedListener listener) {
+        Entry entry = entries.get(uid);
+        if (entry == null) {
+            entry = new Entry(uid);
+            entries.put(uid, entry);
+            dbUsersRef.child(uid).addValueEventListener(entry.valueEventListener);
+        }
+        else if (entry.subscriptions.isEmpty()) {
+            idleCount--;
+        }
+
+        Subscription subscription = new Subscription(uid, listener);
+        entry.subscriptions.add(subscription);
+
+        if (entry.user != null) {
+            listener.onProfileChanged(entry.user);
+        }
+        return subscription;
+    }
+
+    /**
+     * removes an observer, the profile becomes idle once it has none left
+     * @param subscription of the observer
+     */
+    private void release(Subscription subscription) {
+        Entry entry = entries.get(subscription.uid);
+        if (entry == null || !entry.subscriptions.remove(subscription)) {
+            return;
+        }
+
+        if (entry.subscriptions.isEmpty()) {
+            idleCount++;
+            evictIdleProfiles();
+        }
+    }
+
+    /**
+     * drops the least recently used idle profiles and their listeners
+     */
+    private void evictIdleProfiles() {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (idleCount > MAX_IDLE_PROFILES && iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            if (entry.subscriptions.isEmpty()) {
+                dbUsersRef.child(entry.uid).removeEventListener(entry.valueEventListener);
+                iterator.remove();
+                idleCount--;
+            }
+        }
+    }
+}
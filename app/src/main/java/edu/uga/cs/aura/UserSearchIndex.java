@@ -0,0 +1,191 @@
+/**
+ * @author Jett Thistle
+ * @author Kirtana Nidamarti
+ */
+
+package edu.uga.cs.aura;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lets users be found by any word of their name, ignoring case, with one indexed lookup.
+ *
+ * Every lowercased word of a display name and each of its prefixes (from MIN_PREFIX_LENGTH up to
+ * MAX_PREFIX_LENGTH characters) is a key of UserSearch/<token>/<uid>, whose value is the display
+ * name, so "smi" and "smith" both find "John Smith". Single characters are not indexed, since
+ * UserSearch/a or UserSearch/j would hold most users and be rewritten by every rename, so
+ * searches need at least MIN_PREFIX_LENGTH characters in a word. The name that was indexed is kept in
+ * UserSearchNames/<uid> so renaming removes exactly the old tokens in the same update.
+ *
+ * Searches are sorted by name on the server, which needs this in the database rules, otherwise
+ * the whole token is downloaded and sorted on the phone:
+ * "UserSearch": { "$token": { ".indexOn": ".value" } }
+ */
+public class UserSearchIndex {
+
+    public static final int MIN_PREFIX_LENGTH = 2;
+    public static final int MAX_PREFIX_LENGTH = 12;
+
+    private static final String TAG = "UserSearchIndex";
+    private static final String PREFS_NAME = "userSearchIndex";
+    private static final String PREF_INDEXED = "indexed_";
+
+    /**
+     * Indexes a user's new display name and removes the tokens of the old one
+     * @param uid of the user
+     * @param displayName the new display name
+     */
+    public static void update(final String uid, final String displayName) {
+        final DatabaseReference dbRootRef = FirebaseDatabase.getInstance().getReference();
+
+        dbRootRef.child("UserSearchNames").child(uid).addListenerForSingleValueEvent(new ValueEventListener() {
+            /**
+             * Overrides the onDataChange method to replace the tokens of the indexed name
+             * @param dataSnapshot the name that was indexed before
+             */
+            @Override
+            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                String indexedName = dataSnapshot.getValue(String.class);
+                if (displayName.equals(indexedName)) {
+                    return;
+                }
+
+                Map<String, Object> updates = new HashMap<String, Object>();
+                if (indexedName != null) {
+                    for (String token : tokens(indexedName)) {
+                        updates.put("UserSearch/" + token + "/" + uid, null);
+                    }
+                    //names indexed before MIN_PREFIX_LENGTH also have their first letters
+                    for (String word : words(indexedName)) {
+                        updates.put("UserSearch/" + word.substring(0, 1) + "/" + uid, null);
+                    }
+                }
+                //put after the removals, so tokens in both names are kept
+                for (String token : tokens(displayName)) {
+                    updates.put("UserSearch/" + token + "/" + uid, displayName);
+                }
+                updates.put("UserSearchNames/" + uid, displayName);
+
+                dbRootRef.updateChildren(updates);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError databaseError) {
+                Log.d(TAG, "could not read indexed name of " + uid + ": " + databaseError.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Indexes the user's current display name, once per install and user, for users who
+     * saved their name before the index existed
+     * @param context used to remember that it was done
+     * @param uid of the user
+     */
+    public static void indexOnce(Context context, final String uid) {
+        final SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        if (prefs.getBoolean(PREF_INDEXED + uid, false)) {
+            return;
+        }
+
+        FirebaseDatabase.getInstance().getReference().child("Users").child(uid).child("displayName")
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    /**
+                     * Overrides the onDataChange method to index the saved name
+                     * @param dataSnapshot the user's display name
+                     */
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                        String displayName = dataSnapshot.getValue(String.class);
+                        if (displayName != null) {
+                            update(uid, displayName);
+                            prefs.edit().putBoolean(PREF_INDEXED + uid, true).apply();
+                        }
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError databaseError) {
+
+                    }
+                });
+    }
+
+    /**
+     * Makes the query for users whose name has a word starting with the search
+     * @param search what the user typed
+     * @param maxResults the most users to return
+     * @return the query on UserSearch/<token>, or null if the search has no word of at least MIN_PREFIX_LENGTH letters or digits
+     */
+    public static Query search(String search, int maxResults) {
+        //the longest word narrows the results the most
+        String longestWord = null;
+        for (String word : words(search)) {
+            if (longestWord == null || word.length() > longestWord.length()) {
+                longestWord = word;
+            }
+        }
+        if (longestWord == null || longestWord.length() < MIN_PREFIX_LENGTH) {
+            return null;
+        }
+
+        String token = longestWord.length() > MAX_PREFIX_LENGTH ? longestWord.substring(0, MAX_PREFIX_LENGTH) : longestWord;
+        //needs the ".indexOn": ".value" rule on UserSearch/$token
+        return FirebaseDatabase.getInstance().getReference().child("UserSearch").child(token)
+                .orderByValue().limitToFirst(maxResults);
+    }
+
+    /**
+     * Makes the tokens a display name is found by
+     * @param displayName the display name
+     * @return every prefix of every word, from MIN_PREFIX_LENGTH up to MAX_PREFIX_LENGTH characters
+     */
+    static Set<String> tokens(String displayName) {
+        Set<String> tokens = new LinkedHashSet<String>();
+        for (String word : words(displayName)) {
+            for (int length = MIN_PREFIX_LENGTH; length <= Math.min(word.length(), MAX_PREFIX_LENGTH); length++) {
+                tokens.add(word.substring(0, length));
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Splits text into lowercased words of letters and digits, which are always valid database keys
+     * @param text to split
+     * @return the words
+     */
+    private static Set<String> words(String text) {
+        Set<String> words = new LinkedHashSet<String>();
+        StringBuilder word = new StringBuilder();
+        String lowercased = text.toLowerCase(Locale.ROOT);
+
+        for (int i = 0; i <= lowercased.length(); i++) {
+            char c = i < lowercased.length() ? lowercased.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+            }
+            else if (word.length() > 0) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        return words;
+    }
+}
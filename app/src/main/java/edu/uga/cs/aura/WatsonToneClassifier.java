@@ -0,0 +1,55 @@
+/**
+ * @author Jett Thistle
+ * @author Kirtana Nidamarti
+ */
+
+package edu.uga.cs.aura;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Finds tones with IBM's Tone Analyzer, batching messages sent close together
+ */
+public class WatsonToneClassifier implements AsyncToneClassifier {
+
+    /**
+     * Sends the text to the tone analyzing API with the other messages in its batch
+     * @param text of the message
+     * @return the tone from the API, or TONE_NONE with no confidence if the API could not be reached
+     */
+    @Override
+    public Result classify(String text) {
+        try {
+            return new Result(ToneBatcher.getInstance().submit(text).get(), 1);
+        }
+        catch (InterruptedException e) {
+            //let whoever interrupted the thread see it
+            Thread.currentThread().interrupt();
+            return new Result(ToneAnalysisService.TONE_NONE, 0);
+        }
+        catch (ExecutionException e) {
+            return new Result(ToneAnalysisService.TONE_NONE, 0);
+        }
+    }
+
+    /**
+     * Adds the text to the current batch and tells the listener once the batch is analyzed, no
+     * thread waits for it
+     * @param text of the message
+     * @param listener told about the tone from the API, or TONE_NONE with no confidence if the API could not be reached
+     */
+    @Override
+    public void classify(String text, final OnResultListener listener) {
+        ToneBatcher.getInstance().submit(text, new ToneBatcher.OnBatchToneListener() {
+            @Override
+            public void onTone(int tone) {
+                listener.onResult(new Result(tone, 1));
+            }
+
+            @Override
+            public void onFailure(Exception failure) {
+                listener.onResult(new Result(ToneAnalysisService.TONE_NONE, 0));
+            }
+        });
+    }
+}
@@ -0,0 +1,136 @@
+package edu.uga.cs.aura;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the aura math against the per channel loop it replaced, and the properties every
+ * shift should keep, over many random auras.
+ */
+public class AuraEngineTest {
+
+    private static final int ITERATIONS = 100000;
+
+    @Test
+    public void shift_matchesOriginalLoop() {
+        Random random = new Random(42);
+        int[][] steps = {{60, 15, 30}, {10, 30, 30}};
+        AuraEngine.StepProfile[] profiles = {AuraEngine.USER_PROFILE, AuraEngine.GROUP_PROFILE};
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            int aura = randomAura(random);
+            int tone = random.nextInt(3);
+            int p = random.nextInt(2);
+
+            assertEquals(originalShift(aura, tone, steps[p][0], steps[p][1], steps[p][2]),
+                    AuraEngine.shift(aura, tone, profiles[p]));
+        }
+    }
+
+    @Test
+    public void shift_movesToneChannelUpAndOthersDown() {
+        Random random = new Random(7);
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            int aura = randomAura(random);
+            int tone = random.nextInt(3);
+            int shifted = AuraEngine.shift(aura, tone, AuraEngine.USER_PROFILE);
+
+            assertEquals(0xFF, shifted >>> 24);
+            for (int channel = 0; channel < 3; channel++) {
+                int before = channel(aura, channel);
+                int after = channel(shifted, channel);
+                assertTrue(after >= 0 && after <= 255);
+
+                //only a channel stuck at the other end can move the wrong way
+                if (channel == tone && before != 255) {
+                    assertTrue(after >= before);
+                }
+                else if (channel != tone && before != 0) {
+                    assertTrue(after <= before);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shift_ignoresNoTone() {
+        int aura = 0xFF336699;
+        assertEquals(aura, AuraEngine.shift(aura, AuraEngine.TONE_NONE, AuraEngine.USER_PROFILE));
+        assertEquals(aura, AuraEngine.shift(aura, -1, AuraEngine.GROUP_PROFILE));
+    }
+
+    @Test
+    public void shiftAll_reachesToneColor() {
+        int[] tones = new int[20];
+        Arrays.fill(tones, AuraEngine.TONE_JOY);
+
+        assertEquals(0xFF00FF00, AuraEngine.shiftAll(0xFF808080, tones, AuraEngine.USER_PROFILE));
+        assertEquals(0xFF00FF00, AuraEngine.shiftAll(0xFF808080, tones, AuraEngine.GROUP_PROFILE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void stepProfile_rejectsZeroStep() {
+        new AuraEngine.StepProfile(10, 0, 30);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void stepProfile_rejectsZeroCappedStep() {
+        new AuraEngine.StepProfile(0, 15, 30);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void stepProfile_rejectsStepOver255() {
+        new AuraEngine.StepProfile(60, 15, 256);
+    }
+
+    private static int randomAura(Random random) {
+        //favor the ends, where the capped steps apply
+        int[] rgb = new int[3];
+        for (int i = 0; i < 3; i++) {
+            int pick = random.nextInt(4);
+            rgb[i] = pick == 0 ? 0 : pick == 1 ? 255 : random.nextInt(256);
+        }
+        return 0xFF000000 | (rgb[0] << 16) | (rgb[1] << 8) | rgb[2];
+    }
+
+    private static int channel(int aura, int channel) {
+        return (aura >> (16 - 8 * channel)) & 0xFF;
+    }
+
+    /**
+     * the loop that used to be in the activities, with android.graphics.Color written out
+     */
+    private static int originalShift(int aura, int toneResult, int cappedStep, int downStep, int upStep) {
+        int[] auraRGB = {channel(aura, 0), channel(aura, 1), channel(aura, 2)};
+
+        for (int i = 0; i < auraRGB.length; i++) {
+            int difference = i == toneResult ? 255 - auraRGB[i] : 0 - auraRGB[i];
+
+            if (auraRGB[i] == 255) {
+                if (difference != 0) {
+                    auraRGB[i] -= cappedStep;
+                }
+            }
+            else if (auraRGB[i] == 0) {
+                if (difference != 0) {
+                    auraRGB[i] += cappedStep;
+                }
+            }
+            else if (difference <= -downStep) {
+                auraRGB[i] -= downStep;
+            }
+            else if (difference >= upStep) {
+                auraRGB[i] += upStep;
+            }
+            else {
+                auraRGB[i] += difference;
+            }
+        }
+        return 0xFF000000 | (auraRGB[0] << 16) | (auraRGB[1] << 8) | auraRGB[2];
+    }
+}
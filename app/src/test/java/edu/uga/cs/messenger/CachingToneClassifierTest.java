@@ -0,0 +1,62 @@
+package edu.uga.cs.aura;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that only tones the classifier was sure about are remembered, so a failed request is
+ * never cached as a message with no tone.
+ */
+public class CachingToneClassifierTest {
+
+    /**
+     * a classifier that always gives the same result and counts how often it was asked
+     */
+    private static class FixedToneClassifier implements ToneClassifier {
+        private final Result result;
+        private int calls;
+
+        FixedToneClassifier(Result result) {
+            this.result = result;
+        }
+
+        @Override
+        public Result classify(String text) {
+            calls++;
+            return result;
+        }
+    }
+
+    @Test
+    public void classify_failedRequestIsNotCached() {
+        ToneCache toneCache = ToneCache.getInstance();
+        String text = "failed request " + System.nanoTime();
+        FixedToneClassifier failing = new FixedToneClassifier(new ToneClassifier.Result(ToneAnalysisService.TONE_NONE, 0));
+        CachingToneClassifier classifier = new CachingToneClassifier(failing, toneCache);
+
+        ToneClassifier.Result result = classifier.classify(text);
+
+        assertEquals(0, result.getConfidence(), 0);
+        assertNull(toneCache.get(text));
+
+        //the next send asks again instead of reusing the failure
+        classifier.classify(text);
+        assertEquals(2, failing.calls);
+    }
+
+    @Test
+    public void classify_answerIsCached() {
+        ToneCache toneCache = ToneCache.getInstance();
+        String text = "answered request " + System.nanoTime();
+        FixedToneClassifier answering = new FixedToneClassifier(new ToneClassifier.Result(ToneAnalysisService.TONE_JOY, 1));
+        CachingToneClassifier classifier = new CachingToneClassifier(answering, toneCache);
+
+        classifier.classify(text);
+        ToneClassifier.Result cached = classifier.classify(text);
+
+        assertEquals(ToneAnalysisService.TONE_JOY, cached.getTone());
+        assertEquals(Integer.valueOf(ToneAnalysisService.TONE_JOY), toneCache.get(text));
+        assertEquals(1, answering.calls);
+    }
+}
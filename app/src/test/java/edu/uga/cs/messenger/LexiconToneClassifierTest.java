@@ -0,0 +1,28 @@
+package edu.uga.cs.aura;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that an emoticon is not also counted as a shorter emoticon inside it, which made
+ * ">:(" a tie between anger and sadness with no confidence.
+ */
+public class LexiconToneClassifierTest {
+
+    private final LexiconToneClassifier classifier = new LexiconToneClassifier();
+
+    @Test
+    public void classify_countsAnAngryEmoticonOnlyAsAnger() {
+        ToneClassifier.Result result = classifier.classify(">:(");
+
+        assertEquals(ToneAnalysisService.TONE_ANGER, result.getTone());
+        assertTrue(result.getConfidence() > 0);
+    }
+
+    @Test
+    public void classify_stillCountsShortEmoticonsOnTheirOwn() {
+        assertEquals(ToneAnalysisService.TONE_SADNESS, classifier.classify("ok :(").getTone());
+        assertEquals(ToneAnalysisService.TONE_ANGER, classifier.classify("ugh >:[").getTone());
+    }
+}
@@ -0,0 +1,33 @@
+package edu.uga.cs.aura;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the time read from a push ID is the time it was made, since group messages are
+ * stamped with it instead of a server time that would change when the Outbox sends them again.
+ */
+public class PushIdsTest {
+
+    @Test
+    public void timeOfKey_readsTheTimeOfAPushID() {
+        long time = 1577836800000L;
+        String pushID = PushIds.keyForTime(time) + "abcdefghijkl";
+
+        assertEquals(time, PushIds.timeOfKey(pushID));
+    }
+
+    @Test
+    public void keyForTime_sortsInTimeOrder() {
+        assertTrue(PushIds.keyForTime(1000).compareTo(PushIds.keyForTime(1001)) < 0);
+        assertTrue(PushIds.keyForTime(1577836800000L).compareTo(PushIds.keyForTime(1577836800000L + 64)) < 0);
+    }
+
+    @Test
+    public void timeOfKey_isZeroForOtherKeys() {
+        assertEquals(0, PushIds.timeOfKey("group name"));
+        assertEquals(0, PushIds.timeOfKey("abc"));
+        assertEquals(0, PushIds.timeOfKey(null));
+    }
+}